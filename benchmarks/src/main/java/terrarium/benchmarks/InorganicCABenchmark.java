@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2026 Terrarium contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package terrarium.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import terrarium.CellStorage;
+import terrarium.CellularEngine;
+import terrarium.EngineType;
+import terrarium.Scene;
+
+/**
+ * Throughput of InorganicCA.updateStates(), in ticks per second, for each
+ * of the block engines.  Every measured operation restores the initial
+ * scene with all tiles awake and runs a fixed number of ticks from it, so
+ * that the update kernel is measured rather than the skipping of settled
+ * tiles.
+ *
+ * @author Terrarium contributors
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class InorganicCABenchmark {
+    
+    @Param({"256", "1024", "4096"})
+    int size;
+    
+    @Param({"EMPTY", "HALF_DIRT", "WATERLOGGED", "CHAMBERS"})
+    Scene scene;
+    
+    @Param({"BLOCK", "TABLE", "BIT_SLICED"})
+    EngineType engine;
+    
+    /** Ticks run by each measured operation. */
+    static final int TICKS = 16;
+    
+    CellularEngine ca;
+    CellularEngine initial;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        ca = engine.create(size, size, CellStorage.BYTE);
+        scene.apply(ca, 1);
+        initial = ca.snapshot();
+    }
+    
+    /**
+     * Settled tiles are skipped, so without a reset the CA would soon be
+     * doing next to nothing.
+     */
+    @Setup(Level.Invocation)
+    public void reset() {
+        ca.restore(initial);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(TICKS)
+    public void updateStates() {
+        for (int t=0; t<TICKS; t++)
+            ca.updateStates();
+    }
+}
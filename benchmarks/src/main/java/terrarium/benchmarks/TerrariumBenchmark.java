@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2026 Terrarium contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package terrarium.benchmarks;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import terrarium.Scene;
+import terrarium.Terrarium;
+
+/**
+ * Throughput of rendering and serializing a static scene.  Rendering
+ * produces a complete frame with Terrarium.updateImage() and draws it to
+ * an off-screen image the size of the terrarium.
+ *
+ * @author Terrarium contributors
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TerrariumBenchmark {
+    
+    @Param({"256", "1024", "4096"})
+    int size;
+    
+    @Param({"EMPTY", "HALF_DIRT", "WATERLOGGED", "CHAMBERS"})
+    Scene scene;
+    
+    Terrarium terrarium;
+    BufferedImage output;
+    Graphics g;
+    
+    @Setup
+    public void setup() {
+        System.setProperty("java.awt.headless", "true");
+        
+        terrarium = new Terrarium(size, size);
+        terrarium.setBackgroundColour(new Color(200, 200, 255));
+        scene.apply(terrarium.getEngine(), 1);
+        
+        output = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        g = output.getGraphics();
+    }
+    
+    @TearDown
+    public void tearDown() {
+        g.dispose();
+    }
+    
+    @Benchmark
+    public BufferedImage render() {
+        // Force a complete frame to be produced, as when the whole
+        // terrarium is changing.
+        terrarium.getEngine().markAllDirty();
+        terrarium.updateImage();
+        terrarium.render(g, size, size);
+        return output;
+    }
+    
+    @Benchmark
+    public String serialize() {
+        return terrarium.serialize();
+    }
+}
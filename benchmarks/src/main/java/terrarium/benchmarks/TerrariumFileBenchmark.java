@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2026 Terrarium contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package terrarium.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import terrarium.InorganicCA;
+import terrarium.Scene;
+import terrarium.TerrariumFile;
+
+/**
+ * Throughput of encoding a static scene in the binary .terrarium format.
+ * The output goes to memory so that only the encoding is measured, not
+ * the disk.
+ *
+ * @author Terrarium contributors
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TerrariumFileBenchmark {
+    
+    @Param({"256", "1024", "4096"})
+    int size;
+    
+    @Param({"EMPTY", "HALF_DIRT", "WATERLOGGED", "CHAMBERS"})
+    Scene scene;
+    
+    @Param({"RAW", "RLE"})
+    TerrariumFile.Encoding encoding;
+    
+    @Param({"false", "true"})
+    boolean compress;
+    
+    InorganicCA ca;
+    ByteArrayOutputStream output;
+    
+    @Setup
+    public void setup() {
+        ca = new InorganicCA(size, size);
+        scene.apply(ca, 1);
+        output = new ByteArrayOutputStream(size*size + 1024);
+    }
+    
+    @Benchmark
+    public int write() throws IOException {
+        output.reset();
+        TerrariumFile.write(ca, output, encoding, compress);
+        return output.size();
+    }
+}
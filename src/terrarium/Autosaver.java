@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) 2026 Terrarium contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package terrarium;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Periodically saves snapshots of a running CA without pausing it.
+ * 
+ * The owner of the CA calls tickCompleted() between ticks.  When a
+ * snapshot is due, the grid is copied there and then, which is cheap.
+ * Encoding and writing the copy happen on a background thread.  Only the
+ * most recent snapshots are kept on disk.
+ * 
+ * Snapshot files are named after the time they were taken and the number
+ * of ticks seen by the autosaver, so they sort in the order they were
+ * written and those of different sessions never collide.  Snapshots
+ * already in the directory count towards the number kept, so that those
+ * of earlier sessions are removed in turn.
+ * 
+ * Snapshots are written to temporary files which are renamed once
+ * complete.  A temporary file left behind by a writer killed at exit is
+ * removed when the next autosaver is created for the same directory and
+ * prefix, unless another autosaver is still writing it.
+ *
+ * @author Terrarium contributors
+ */
+public class Autosaver {
+    
+    final File directory;
+    final String prefix;
+    final long tickInterval;
+    final long timeInterval;
+    final int keep;
+    
+    /**
+     * Format in which snapshots are written.  Set on any thread, and read
+     * when a snapshot is taken.
+     */
+    volatile TerrariumFile.Encoding encoding = TerrariumFile.Encoding.RLE;
+    volatile boolean compress = true;
+    
+    long tickCount = 0;
+    long lastSaveTick = 0;
+    long lastSaveTime;
+    
+    /** Matches the names of snapshot files with this autosaver's prefix. */
+    final Pattern snapshotName;
+    
+    /**
+     * Snapshot files in the directory, oldest first.  Touched only by the
+     * writer thread.
+     */
+    final Deque<File> savedFiles = new ArrayDeque<>();
+    
+    /** Temporary files being written by any autosaver. */
+    static final Set<File> WRITING = ConcurrentHashMap.newKeySet();
+    
+    /** True while a snapshot is being written. */
+    volatile boolean writing = false;
+    
+    /** True once close() has been called. */
+    volatile boolean closed = false;
+    
+    final ExecutorService executor;
+    
+    /**
+     * Create a new autosaver.  At least one of the intervals must be
+     * positive.
+     * 
+     * @param directory directory in which to write snapshots
+     * @param prefix prefix of snapshot file names
+     * @param tickInterval save every this many ticks, or 0 to disable
+     * @param timeInterval save every this many seconds, or 0 to disable
+     * @param keep number of snapshots to keep on disk
+     */
+    public Autosaver(File directory, String prefix, long tickInterval,
+            double timeInterval, int keep) {
+        
+        if (tickInterval <= 0 && timeInterval <= 0)
+            throw new IllegalArgumentException("No autosave interval given.");
+        if (keep < 1)
+            throw new IllegalArgumentException("Must keep at least one snapshot.");
+        
+        this.directory = directory;
+        this.prefix = prefix;
+        this.tickInterval = tickInterval;
+        this.timeInterval = (long)(timeInterval*1e9);
+        this.keep = keep;
+        
+        lastSaveTime = System.nanoTime();
+        snapshotName = Pattern.compile(Pattern.quote(prefix) + "-[0-9-]+\\.terrarium");
+        
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Terrarium autosave");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        
+        // Scanning the directory is left to the writer thread, so that
+        // it never delays the caller.
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                scanDirectory();
+            }
+        });
+    }
+    
+    /**
+     * Delete temporary files left in the directory by an earlier
+     * autosaver with the same prefix which was stopped mid-write, and
+     * queue the snapshots already there for removal in turn.
+     */
+    void scanDirectory() {
+        File[] files = directory.listFiles();
+        if (files == null)
+            return;
+        
+        Arrays.sort(files);
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.startsWith(prefix + "-"))
+                continue;
+            
+            // Files still being written are registered before they are
+            // created and until they are renamed, so an unregistered file
+            // found here really has been abandoned.
+            if (name.endsWith(".terrarium.tmp")) {
+                if (!WRITING.contains(file))
+                    file.delete();
+            } else if (snapshotName.matcher(name).matches())
+                savedFiles.addLast(file);
+        }
+    }
+    
+    /**
+     * Choose the format of snapshots written from now on.  By default
+     * they hold compressed run-length encoded cell data.
+     * 
+     * @param encoding encoding used for the cell data
+     * @param compress if true, cell data is Deflate compressed
+     */
+    public void setFormat(TerrariumFile.Encoding encoding, boolean compress) {
+        this.encoding = encoding;
+        this.compress = compress;
+    }
+    
+    /**
+     * Notify the autosaver that a tick of the CA has been completed.  Must
+     * be called on the thread which updates the CA.  Does nothing once the
+     * autosaver has been closed.
+     * 
+     * @param ca CA which has just been updated
+     */
+    public void tickCompleted(CellularEngine ca) {
+        tickCount += 1;
+        
+        long now = System.nanoTime();
+        boolean due = (tickInterval > 0 && tickCount - lastSaveTick >= tickInterval)
+                || (timeInterval > 0 && now - lastSaveTime >= timeInterval);
+        
+        // Snapshots are skipped rather than queued if the disk can't keep up.
+        if (!due || writing || closed)
+            return;
+        
+        lastSaveTick = tickCount;
+        lastSaveTime = now;
+        
+        final CellularEngine snapshot = ca.snapshot();
+        final TerrariumFile.Encoding snapshotEncoding = encoding;
+        final boolean snapshotCompress = compress;
+        final File file = new File(directory,
+                String.format("%s-%tY%<tm%<td-%<tH%<tM%<tS%<tL-%010d.terrarium",
+                        prefix, System.currentTimeMillis(), tickCount));
+        
+        writing = true;
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        write(snapshot, file, snapshotEncoding, snapshotCompress);
+                    } finally {
+                        writing = false;
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            // Closed since the check above.
+            writing = false;
+        }
+    }
+    
+    /**
+     * Write a snapshot and remove any which are no longer wanted.  The
+     * temporary file used by TerrariumFile.write() is registered while
+     * it exists, so that other autosavers leave it alone.
+     * 
+     * @param snapshot
+     * @param file 
+     * @param encoding encoding used for the cell data
+     * @param compress if true, cell data is Deflate compressed
+     */
+    void write(CellularEngine snapshot, File file,
+            TerrariumFile.Encoding encoding, boolean compress) {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        WRITING.add(tmpFile);
+        try {
+            TerrariumFile.write(snapshot, file, encoding, compress);
+        } catch (IOException ex) {
+            System.err.println("Autosave to " + file + " failed: "
+                    + ex.getMessage());
+            return;
+        } finally {
+            WRITING.remove(tmpFile);
+        }
+        
+        savedFiles.addLast(file);
+        while (savedFiles.size() > keep)
+            savedFiles.removeFirst().delete();
+    }
+    
+    /**
+     * Stop the autosaver without waiting.  Any snapshot being written is
+     * finished in the background, and no more are taken.  Use
+     * awaitClose() instead if the program is about to exit, as the writer
+     * thread does not keep it alive.
+     */
+    public void close() {
+        closed = true;
+        executor.shutdown();
+    }
+    
+    /**
+     * Stop the autosaver, waiting for any snapshot being written to be
+     * finished.
+     */
+    public void awaitClose() {
+        close();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright (C) 2026 Terrarium contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package terrarium;
+
+/**
+ * A brush stroke, held as the set of cells it covers.  Each row of the
+ * stroke is kept as a sorted list of disjoint column spans, so painting
+ * costs time in proportion to the painted area no matter how many
+ * segments went into the stroke.
+ * 
+ * Segments are rasterised as capsules: every cell whose centre lies
+ * within the brush radius of the segment is covered.  A segment of zero
+ * length is a disc.
+ *
+ * @author Terrarium contributors
+ */
+public class BrushStroke {
+    
+    final InorganicCA.CellState state;
+    final int radius;
+    final int width, height;
+    
+    /**
+     * Spans of each row between rowOffset and rowOffset+rows.length.
+     * Element 0 of a row holds the number of spans, followed by the
+     * start (inclusive) and end (exclusive) columns of each.  Rows which
+     * are not covered are null.
+     */
+    int[][] rows;
+    int rowOffset;
+    
+    /**
+     * Create an empty stroke.
+     * 
+     * @param state state painted by the stroke
+     * @param radius brush radius in cells
+     * @param width width of the terrarium being painted
+     * @param height height of the terrarium being painted
+     */
+    public BrushStroke(InorganicCA.CellState state, int radius,
+            int width, int height) {
+        if (radius < 1)
+            throw new IllegalArgumentException("Brush radius must be positive.");
+        
+        this.state = state;
+        this.radius = radius;
+        this.width = width;
+        this.height = height;
+    }
+    
+    /**
+     * @return state painted by this stroke.
+     */
+    public InorganicCA.CellState getState() {
+        return state;
+    }
+    
+    /**
+     * @return brush radius in cells.
+     */
+    public int getRadius() {
+        return radius;
+    }
+    
+    /**
+     * @return true if the stroke covers no cells.
+     */
+    public boolean isEmpty() {
+        return rows == null;
+    }
+    
+    /**
+     * Add a disc of the brush radius centred on the given cell.
+     * 
+     * @param x column
+     * @param y row
+     */
+    public void addPoint(int x, int y) {
+        addSegment(x, y, x, y);
+    }
+    
+    /**
+     * Add every cell within the brush radius of the segment between the
+     * two given cells.
+     * 
+     * @param x0 column of first end
+     * @param y0 row of first end
+     * @param x1 column of second end
+     * @param y1 row of second end
+     */
+    public void addSegment(int x0, int y0, int x1, int y1) {
+        double r2 = (double)radius*radius;
+        
+        double dx = x1 - x0, dy = y1 - y0;
+        double len = Math.sqrt(dx*dx + dy*dy);
+        
+        int iMin = Math.max(Math.min(y0, y1) - radius + 1, 0);
+        int iMax = Math.min(Math.max(y0, y1) + radius - 1, height - 1);
+        
+        for (int i=iMin; i<=iMax; i++) {
+            double lo = Double.POSITIVE_INFINITY;
+            double hi = Double.NEGATIVE_INFINITY;
+            
+            // Discs at either end.
+            double e0 = r2 - (double)(i-y0)*(i-y0);
+            if (e0 > 0) {
+                double h = Math.sqrt(e0);
+                lo = Math.min(lo, x0 - h);
+                hi = Math.max(hi, x0 + h);
+            }
+            double e1 = r2 - (double)(i-y1)*(i-y1);
+            if (e1 > 0) {
+                double h = Math.sqrt(e1);
+                lo = Math.min(lo, x1 - h);
+                hi = Math.max(hi, x1 + h);
+            }
+            
+            // Band swept between them, made up of the points whose
+            // projection falls on the segment and which lie closer to it
+            // than the radius.  Both conditions are linear in the column.
+            if (len > 0) {
+                double[] range = {Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY};
+                if (clip(range, dx, (i-y0)*dy - x0*dx, 0, len*len)
+                        && clip(range, dy, -(i-y0)*dx - x0*dy, -radius*len, radius*len)) {
+                    lo = Math.min(lo, range[0]);
+                    hi = Math.max(hi, range[1]);
+                }
+            }
+            
+            // The row is cut by a convex shape, so its cells form a single
+            // span.  Cells on the boundary are excluded.
+            int start = Math.max((int)Math.floor(lo) + 1, 0);
+            int end = Math.min((int)Math.ceil(hi), width);
+            if (start < end)
+                addSpan(i, start, end);
+        }
+    }
+    
+    /**
+     * Narrow the range of x to those values for which a*x + b lies
+     * between lo and hi.
+     * 
+     * @param range range to narrow, as {min, max}
+     * @param a
+     * @param b
+     * @param lo
+     * @param hi
+     * @return false if no values remain.
+     */
+    private static boolean clip(double[] range, double a, double b,
+            double lo, double hi) {
+        if (a == 0)
+            return b >= lo && b <= hi;
+        
+        double xa = (lo - b)/a;
+        double xb = (hi - b)/a;
+        range[0] = Math.max(range[0], Math.min(xa, xb));
+        range[1] = Math.min(range[1], Math.max(xa, xb));
+        
+        return range[0] <= range[1];
+    }
+    
+    /**
+     * Add the cells between the given columns of a row, merging the new
+     * span with any it overlaps or touches.
+     * 
+     * @param i row
+     * @param start first column
+     * @param end column after the last
+     */
+    void addSpan(int i, int start, int end) {
+        int[] row = row(i);
+        int n = row[0];
+        
+        // Spans before k end before the new one starts; spans from k
+        // to m-1 overlap or touch it and are absorbed.
+        int k = 0;
+        while (k < n && row[2+2*k] < start)
+            k += 1;
+        int m = k;
+        while (m < n && row[1+2*m] <= end) {
+            start = Math.min(start, row[1+2*m]);
+            end = Math.max(end, row[2+2*m]);
+            m += 1;
+        }
+        
+        int newN = n - (m - k) + 1;
+        if (1 + 2*newN > row.length) {
+            int[] grown = new int[2*row.length + 1];
+            System.arraycopy(row, 0, grown, 0, 1 + 2*k);
+            System.arraycopy(row, 1+2*m, grown, 1+2*(k+1), 2*(n-m));
+            row = grown;
+            rows[i - rowOffset] = row;
+        } else
+            System.arraycopy(row, 1+2*m, row, 1+2*(k+1), 2*(n-m));
+        
+        row[1+2*k] = start;
+        row[2+2*k] = end;
+        row[0] = newN;
+    }
+    
+    /**
+     * Retrieve the span list of a row, creating it and extending the row
+     * window as needed.
+     * 
+     * @param i row
+     * @return span list
+     */
+    private int[] row(int i) {
+        if (rows == null) {
+            rows = new int[2*radius + 1][];
+            rowOffset = Math.max(i - radius, 0);
+        } else if (i < rowOffset || i >= rowOffset + rows.length) {
+            int first = Math.min(i, rowOffset);
+            int last = Math.max(i, rowOffset + rows.length - 1);
+            
+            // Leave room to keep growing in the same direction.
+            int size = Math.max(last - first + 1, 2*rows.length);
+            int newOffset = i < rowOffset
+                    ? Math.max(last + 1 - size, 0)
+                    : first;
+            
+            int[][] grown = new int[size][];
+            System.arraycopy(rows, 0, grown, rowOffset - newOffset, rows.length);
+            rows = grown;
+            rowOffset = newOffset;
+        }
+        
+        int[] row = rows[i - rowOffset];
+        if (row == null) {
+            row = new int[3];
+            rows[i - rowOffset] = row;
+        }
+        
+        return row;
+    }
+    
+    /**
+     * Paint the stroke onto a CA.  Only cells whose states are empty for
+     * the stroke's state are changed.
+     * 
+     * @param ca CA to paint, of the size given at construction
+     * @return number of cells changed
+     */
+    public int apply(CellularEngine ca) {
+        if (rows == null)
+            return 0;
+        
+        int changed = 0;
+        for (int r=0; r<rows.length; r++) {
+            int[] row = rows[r];
+            if (row == null)
+                continue;
+            
+            for (int k=0; k<row[0]; k++)
+                changed += ca.fillSpan(rowOffset + r, row[1+2*k], row[2+2*k], state);
+        }
+        
+        return changed;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2026 Terrarium contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package terrarium;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Cell grid storing one state ordinal per byte.
+ *
+ * @author Terrarium contributors
+ */
+public class ByteCellGrid implements CellGrid {
+    
+    final byte[] states;
+    
+    public ByteCellGrid(int size) {
+        states = new byte[size];
+    }
+    
+    private ByteCellGrid(byte[] states) {
+        this.states = states;
+    }
+
+    @Override
+    public int size() {
+        return states.length;
+    }
+
+    @Override
+    public int get(int index) {
+        return states[index];
+    }
+
+    @Override
+    public void set(int index, int state) {
+        states[index] = (byte)state;
+    }
+
+    @Override
+    public CellGrid copy() {
+        return new ByteCellGrid(states.clone());
+    }
+
+    @Override
+    public void copyFrom(int index, ByteBuffer src, int length) {
+        src.get(states, index, length);
+    }
+
+    @Override
+    public void copyTo(int index, ByteBuffer dst, int length) {
+        dst.put(states, index, length);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2026 Terrarium contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package terrarium;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Flat storage for the states of a grid of cells.  States are stored as
+ * CellState ordinals rather than references, leaving implementations free
+ * to pack them as tightly as they like.
+ *
+ * @author Terrarium contributors
+ */
+public interface CellGrid {
+    
+    /**
+     * @return number of cells held by the grid.
+     */
+    public int size();
+    
+    /**
+     * @param index
+     * @return ordinal of the state of the cell at index.
+     */
+    public int get(int index);
+    
+    /**
+     * Set the state of a cell.
+     * 
+     * @param index
+     * @param state ordinal of the new state
+     */
+    public void set(int index, int state);
+    
+    /**
+     * @return independent copy of this grid.
+     */
+    public CellGrid copy();
+    
+    /**
+     * Set the states of a run of consecutive cells from the ordinals held
+     * in a buffer, advancing the buffer's position.
+     * 
+     * @param index index of first cell
+     * @param src buffer of state ordinals, one per byte
+     * @param length number of cells
+     */
+    public void copyFrom(int index, ByteBuffer src, int length);
+    
+    /**
+     * Write the states of a run of consecutive cells to a buffer as
+     * ordinals, advancing the buffer's position.
+     * 
+     * @param index index of first cell
+     * @param dst buffer to receive state ordinals, one per byte
+     * @param length number of cells
+     */
+    public void copyTo(int index, ByteBuffer dst, int length);
+}
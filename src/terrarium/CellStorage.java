@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2026 Terrarium contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package terrarium;
+
+/**
+ * Available storage backends for the cell grid of an InorganicCA.
+ *
+ * @author Terrarium contributors
+ */
+public enum CellStorage {
+    
+    /** One byte per cell. */
+    BYTE(1) {
+        @Override
+        public CellGrid create(int rows, int cols) {
+            return new ByteCellGrid(cellCount(rows, cols));
+        }
+    },
+    
+    /** Two cells per byte. */
+    NIBBLE(0.5) {
+        @Override
+        public CellGrid create(int rows, int cols) {
+            return new NibbleCellGrid(cellCount(rows, cols));
+        }
+    },
+    
+    /** Sparse chunks, allocated only where the grid is not EMPTY. */
+    CHUNKED(0) {
+        @Override
+        public CellGrid create(int rows, int cols) {
+            return new ChunkedCellGrid(rows, cols);
+        }
+    },
+    
+    /**
+     * One byte per cell, held off the Java heap in memory limited by
+     * -XX:MaxDirectMemorySize, or in a file when mapped.
+     */
+    DIRECT(0) {
+        @Override
+        public CellGrid create(int rows, int cols) {
+            return new DirectCellGrid(cellCount(rows, cols));
+        }
+    };
+    
+    private final double heapBytesPerCell;
+    
+    private CellStorage(double heapBytesPerCell) {
+        this.heapBytesPerCell = heapBytesPerCell;
+    }
+    
+    /**
+     * @return number of bytes of Java heap taken up by each cell of a
+     * newly created grid.  Zero for sparse grids, which take up memory
+     * only as cells are filled, and for grids held off the heap.
+     */
+    public double getHeapBytesPerCell() {
+        return heapBytesPerCell;
+    }
+    
+    /**
+     * Create an empty grid with the given number of rows and columns.
+     * 
+     * @param rows
+     * @param cols
+     * @return new grid
+     */
+    public abstract CellGrid create(int rows, int cols);
+    
+    /**
+     * @param rows
+     * @param cols
+     * @return number of cells in a grid of the given size.
+     * @throws IllegalArgumentException if cells cannot be indexed by int.
+     */
+    static int cellCount(int rows, int cols) {
+        if ((long)rows*cols > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Grid too large.");
+        return rows*cols;
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2026 Terrarium contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package terrarium;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Operations through which a terrarium drives the simulation of its
+ * inorganic contents: advancing it, reading and editing cells, saving it
+ * and reporting on its progress.
+ * 
+ * The renderer, the file formats and the engine types go through this
+ * interface alone, so an engine need not share any code with InorganicCA.
+ * Rows of cells are read in bulk.  For display, the grid is divided into
+ * square tiles, each flagged as dirty whenever its contents change so
+ * that only those need redrawing.  An engine which does not track changes
+ * can simply report every tile as dirty.
+ *
+ * @author Terrarium contributors
+ */
+public interface CellularEngine {
+    
+    /**
+     * @return width of the grid in cells.
+     */
+    public int getWidth();
+    
+    /**
+     * @return height of the grid in cells.
+     */
+    public int getHeight();
+    
+    /**
+     * Advance the simulation by one tick.
+     */
+    public void updateStates();
+    
+    /**
+     * @param i row
+     * @param j column
+     * @return state of cell (i,j), or WALL if it lies outside the grid.
+     */
+    public InorganicCA.CellState getCellState(int i, int j);
+    
+    /**
+     * Set the state of a cell within the grid.
+     * 
+     * @param i row
+     * @param j column
+     * @param newState 
+     */
+    public void setCellState(int i, int j, InorganicCA.CellState newState);
+    
+    /**
+     * Set to the given state those cells of a row which are empty for it,
+     * between columns jStart (inclusive) and jEnd (exclusive).
+     * 
+     * @param i row
+     * @param jStart first column
+     * @param jEnd column after the last
+     * @param newState
+     * @return number of cells changed
+     */
+    public int fillSpan(int i, int jStart, int jEnd, InorganicCA.CellState newState);
+    
+    /**
+     * @return JSON representation of the grid.
+     */
+    public String serialize();
+    
+    /**
+     * @param state
+     * @return number of cells currently in the given state.
+     */
+    public int getPopulation(InorganicCA.CellState state);
+    
+    /**
+     * @return number of swaps made during the last tick.
+     */
+    public long getLastSwapCount();
+    
+    /**
+     * @return number of blocks or cells examined during the last tick.
+     */
+    public int getLastActiveBlockCount();
+    
+    /**
+     * @return number of tiles which will be visited by the next tick.
+     */
+    public int getActiveTileCount();
+    
+    /**
+     * Copy the states of a run of cells within a row to a buffer as
+     * ordinals, one per byte, advancing the buffer's position.
+     * 
+     * @param i row
+     * @param j first column
+     * @param dst buffer to receive the states
+     * @param length number of cells
+     */
+    public void copyRow(int i, int j, ByteBuffer dst, int length);
+    
+    /**
+     * @return width and height in cells of the tiles dividing the grid.
+     */
+    public int getTileSize();
+    
+    /**
+     * @return number of rows of tiles.
+     */
+    public int getTileRows();
+    
+    /**
+     * @return number of columns of tiles.
+     */
+    public int getTileCols();
+    
+    /**
+     * Clear the dirty flag of a tile.
+     * 
+     * @param tr tile row
+     * @param tc tile column
+     * @return true if the tile has changed since its flag was last cleared.
+     */
+    public boolean clearTileDirty(int tr, int tc);
+    
+    /**
+     * Mark every tile as dirty, forcing the whole grid to be redisplayed.
+     */
+    public void markAllDirty();
+    
+    /**
+     * @return phase of the Margolus partition used by the last tick.
+     */
+    public int getPhase();
+    
+    /**
+     * @return current state of the random number generator.
+     */
+    public long getSeed();
+    
+    /**
+     * @param seed new state of the random number generator
+     */
+    public void setSeed(long seed);
+    
+    /**
+     * @return true if the partition phase is drawn at random each tick.
+     */
+    public boolean isRandomPhase();
+    
+    /**
+     * @param randomPhase if true, draw the partition phase at random each
+     * tick rather than cycling through the phases in order
+     */
+    public void setRandomPhase(boolean randomPhase);
+    
+    /**
+     * @param parallelism number of threads used to update the grid
+     */
+    public void setParallelism(int parallelism);
+    
+    /**
+     * @return number of threads used to update the grid.
+     */
+    public int getParallelism();
+    
+    /**
+     * Take a copy of the current state of the engine, which can safely be
+     * read on another thread while this engine continues to update.
+     * 
+     * @return snapshot
+     */
+    public CellularEngine snapshot();
+    
+    /**
+     * Replace the grid, phase and random state of this engine with those
+     * of another engine of the same size, such as a snapshot of it.
+     * 
+     * @param source
+     */
+    public void restore(CellularEngine source);
+    
+    /**
+     * @return true if the grid is held in a memory-mapped file.
+     */
+    public boolean isFileBacked();
+    
+    /**
+     * Write any changes to a file-backed grid out to its file.  Does
+     * nothing if the grid is not file-backed.
+     */
+    public void flush();
+}
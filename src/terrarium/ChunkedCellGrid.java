@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2026 Terrarium contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package terrarium;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Sparse cell grid made up of square chunks of cells.  Chunks are only
+ * allocated once a non-EMPTY state is written into them, so worlds which
+ * are mostly empty take up a small fraction of the memory of a dense
+ * grid.
+ * 
+ * Allocated chunks are held in an open addressing hash table keyed by
+ * chunk number.  Lookups take no locks, so that disjoint cells may be
+ * read and written from several threads at once as they are during a
+ * parallel sweep.  Allocation is synchronized.  Chunks are published
+ * safely to readers without locks because a chunk's key and state array
+ * are final, and a replacement table is published through a volatile
+ * field.
+ *
+ * @author Terrarium contributors
+ */
+public class ChunkedCellGrid implements CellGrid {
+    
+    /** Chunks are CHUNK_SIZE x CHUNK_SIZE cells. */
+    static final int CHUNK_BITS = 6;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    
+    static final int INITIAL_CAPACITY = 64;
+    
+    /** Log2 of the spacing of entries in recentChunks. */
+    static final int RECENT_SHIFT = 4;
+    
+    final int rows, cols;
+    final int chunkCols;
+    
+    /** Hash table of allocated chunks, at most half full. */
+    volatile Chunk[] table;
+    int chunkCount;
+    
+    /**
+     * Most recently used chunk in each row of chunks.  Consecutive
+     * accesses to a row of cells usually fall in the same chunk, so this
+     * saves most hash table lookups.  Keeping one per row of chunks means
+     * that the two rows of a block never evict each other's chunk, and
+     * that the strips of a parallel sweep share entries only where they
+     * meet.  Entries are spaced out so that each sits in a cache line of
+     * its own.
+     */
+    final Chunk[] recentChunks;
+    
+    public ChunkedCellGrid(int rows, int cols) {
+        if ((long)rows*cols > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Grid too large.");
+        
+        this.rows = rows;
+        this.cols = cols;
+        chunkCols = (cols + CHUNK_SIZE - 1) >> CHUNK_BITS;
+        recentChunks = new Chunk[((rows + CHUNK_SIZE - 1) >> CHUNK_BITS) << RECENT_SHIFT];
+        
+        table = new Chunk[INITIAL_CAPACITY];
+        chunkCount = 0;
+    }
+    
+    /**
+     * A chunk of cells, with states stored one per byte in row-major
+     * order.
+     */
+    static final class Chunk {
+        final int key;
+        final byte[] states;
+
+        Chunk(int key, byte[] states) {
+            this.key = key;
+            this.states = states;
+        }
+    }
+    
+    /**
+     * @param key
+     * @param mask table size minus one
+     * @return first table slot to probe for the given chunk.
+     */
+    private static int slot(int key, int mask) {
+        int h = key*0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+    
+    /**
+     * @param key
+     * @return chunk with the given key, or null if it is not allocated.
+     */
+    private Chunk find(int key) {
+        Chunk[] t = table;
+        int mask = t.length - 1;
+        for (int s=slot(key, mask); ; s = (s+1) & mask) {
+            Chunk chunk = t[s];
+            if (chunk == null || chunk.key == key)
+                return chunk;
+        }
+    }
+    
+    /**
+     * @param key
+     * @return chunk with the given key, allocating it if necessary.
+     */
+    private synchronized Chunk allocate(int key) {
+        Chunk chunk = find(key);
+        if (chunk != null)
+            return chunk;
+        
+        chunk = new Chunk(key, new byte[CHUNK_SIZE*CHUNK_SIZE]);
+        
+        Chunk[] t = table;
+        if (2*(chunkCount + 1) > t.length) {
+            Chunk[] newTable = new Chunk[2*t.length];
+            for (Chunk c : t) {
+                if (c != null)
+                    insert(newTable, c);
+            }
+            insert(newTable, chunk);
+            table = newTable;
+        } else
+            insert(t, chunk);
+        
+        chunkCount += 1;
+        return chunk;
+    }
+    
+    private static void insert(Chunk[] t, Chunk chunk) {
+        int mask = t.length - 1;
+        int s = slot(chunk.key, mask);
+        while (t[s] != null)
+            s = (s+1) & mask;
+        t[s] = chunk;
+    }
+    
+    /**
+     * @return number of chunks currently allocated.
+     */
+    public synchronized int getChunkCount() {
+        return chunkCount;
+    }
+
+    @Override
+    public int size() {
+        return rows*cols;
+    }
+
+    @Override
+    public int get(int index) {
+        int row = index/cols;
+        int col = index - row*cols;
+        int chunkRow = row >> CHUNK_BITS;
+        int key = chunkRow*chunkCols + (col >> CHUNK_BITS);
+        
+        Chunk chunk = recentChunks[chunkRow << RECENT_SHIFT];
+        if (chunk == null || chunk.key != key) {
+            chunk = find(key);
+            if (chunk == null)
+                return 0;
+            recentChunks[chunkRow << RECENT_SHIFT] = chunk;
+        }
+        
+        return chunk.states[((row & CHUNK_MASK) << CHUNK_BITS) | (col & CHUNK_MASK)];
+    }
+
+    @Override
+    public void set(int index, int state) {
+        int row = index/cols;
+        int col = index - row*cols;
+        int chunkRow = row >> CHUNK_BITS;
+        int key = chunkRow*chunkCols + (col >> CHUNK_BITS);
+        
+        Chunk chunk = recentChunks[chunkRow << RECENT_SHIFT];
+        if (chunk == null || chunk.key != key) {
+            chunk = find(key);
+            if (chunk == null) {
+                // Unallocated chunks are implicitly EMPTY.
+                if (state == 0)
+                    return;
+                chunk = allocate(key);
+            }
+            recentChunks[chunkRow << RECENT_SHIFT] = chunk;
+        }
+        
+        chunk.states[((row & CHUNK_MASK) << CHUNK_BITS) | (col & CHUNK_MASK)] = (byte)state;
+    }
+
+    @Override
+    public synchronized CellGrid copy() {
+        ChunkedCellGrid copy = new ChunkedCellGrid(rows, cols);
+        Chunk[] t = new Chunk[table.length];
+        for (int s=0; s<t.length; s++) {
+            Chunk chunk = table[s];
+            if (chunk != null)
+                t[s] = new Chunk(chunk.key, chunk.states.clone());
+        }
+        copy.table = t;
+        copy.chunkCount = chunkCount;
+        return copy;
+    }
+
+    @Override
+    public void copyFrom(int index, ByteBuffer src, int length) {
+        for (int k=0; k<length; k++)
+            set(index + k, src.get());
+    }
+
+    @Override
+    public void copyTo(int index, ByteBuffer dst, int length) {
+        for (int k=0; k<length; k++)
+            dst.put((byte)get(index + k));
+    }
+}
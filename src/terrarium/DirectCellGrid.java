@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2026 Terrarium contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package terrarium;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Cell grid stored outside the Java heap, one state ordinal per byte, in
+ * direct or memory-mapped byte buffers.  The garbage collector never has
+ * to scan or copy the grid, however large it is.  A mapped grid is backed
+ * by a file, so its contents can be written out with force() rather than
+ * by copying.
+ * 
+ * Buffers are limited to 2GB, so the grid is split into segments.
+ * Accesses use absolute get and put only, so disjoint cells may be
+ * accessed from several threads at once.
+ *
+ * @author Terrarium contributors
+ */
+public class DirectCellGrid implements CellGrid {
+    
+    static final int SEGMENT_BITS = 30;
+    static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+    
+    final ByteBuffer[] segments;
+    final int size;
+    
+    /**
+     * Create a grid in newly allocated direct memory.
+     * 
+     * @param size number of cells
+     * @throws IllegalArgumentException if the grid would exceed the JVM's
+     * direct memory limit.
+     */
+    public DirectCellGrid(int size) {
+        this(new ByteBuffer[segmentCount(size)], size);
+        
+        // Direct buffers are checked against their own limit before any
+        // memory is allocated, so running past it leaves the heap intact.
+        try {
+            for (int s=0; s<segments.length; s++)
+                segments[s] = ByteBuffer.allocateDirect(segmentLength(s));
+        } catch (OutOfMemoryError ex) {
+            throw new IllegalArgumentException(
+                    "Grid too large for the direct memory limit.", ex);
+        }
+    }
+    
+    private DirectCellGrid(ByteBuffer[] segments, int size) {
+        this.segments = segments;
+        this.size = size;
+    }
+    
+    /**
+     * Create a grid backed by a region of a file.  The file is extended if
+     * the region lies beyond its end, with the new cells being EMPTY.
+     * The grid remains valid after the channel is closed.
+     * 
+     * @param channel channel open for reading and writing
+     * @param position offset of the first cell in the file
+     * @param size number of cells
+     * @return mapped grid
+     * @throws IOException 
+     */
+    public static DirectCellGrid map(FileChannel channel, long position,
+            int size) throws IOException {
+        DirectCellGrid grid = new DirectCellGrid(
+                new ByteBuffer[segmentCount(size)], size);
+        for (int s=0; s<grid.segments.length; s++) {
+            grid.segments[s] = channel.map(FileChannel.MapMode.READ_WRITE,
+                    position + ((long)s << SEGMENT_BITS), grid.segmentLength(s));
+        }
+        return grid;
+    }
+    
+    private static int segmentCount(int size) {
+        return Math.max(1, (int)(((long)size + SEGMENT_SIZE - 1) >> SEGMENT_BITS));
+    }
+    
+    private int segmentLength(int segment) {
+        return Math.min(SEGMENT_SIZE, size - (segment << SEGMENT_BITS));
+    }
+    
+    /**
+     * @return true if the grid is backed by a file.
+     */
+    public boolean isMapped() {
+        return segments[0] instanceof MappedByteBuffer;
+    }
+    
+    /**
+     * Write any changes to a mapped grid out to its file.  Does nothing if
+     * the grid is not mapped.
+     */
+    public void force() {
+        for (ByteBuffer segment : segments) {
+            if (segment instanceof MappedByteBuffer)
+                ((MappedByteBuffer)segment).force();
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int get(int index) {
+        return segments[index >>> SEGMENT_BITS].get(index & SEGMENT_MASK);
+    }
+
+    @Override
+    public void set(int index, int state) {
+        segments[index >>> SEGMENT_BITS].put(index & SEGMENT_MASK, (byte)state);
+    }
+
+    /**
+     * @return copy of this grid in direct memory, which is not mapped
+     * even if this grid is.
+     */
+    @Override
+    public CellGrid copy() {
+        DirectCellGrid copy = new DirectCellGrid(size);
+        for (int s=0; s<segments.length; s++) {
+            ByteBuffer src = segments[s].duplicate();
+            src.clear();
+            copy.segments[s].put(src);
+            copy.segments[s].clear();
+        }
+        return copy;
+    }
+
+    @Override
+    public void copyFrom(int index, ByteBuffer src, int length) {
+        while (length > 0) {
+            int offset = index & SEGMENT_MASK;
+            int n = Math.min(length, SEGMENT_SIZE - offset);
+            
+            ByteBuffer dst = segments[index >>> SEGMENT_BITS].duplicate();
+            dst.position(offset);
+            ByteBuffer part = src.duplicate();
+            part.limit(part.position() + n);
+            dst.put(part);
+            
+            src.position(src.position() + n);
+            index += n;
+            length -= n;
+        }
+    }
+
+    @Override
+    public void copyTo(int index, ByteBuffer dst, int length) {
+        while (length > 0) {
+            int offset = index & SEGMENT_MASK;
+            int n = Math.min(length, SEGMENT_SIZE - offset);
+            
+            ByteBuffer src = segments[index >>> SEGMENT_BITS].duplicate();
+            src.position(offset);
+            src.limit(offset + n);
+            dst.put(src);
+            
+            index += n;
+            length -= n;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2026 Terrarium contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package terrarium;
+
+/**
+ * Available engines for updating the inorganic contents of a terrarium.
+ * All of the block engines produce identical results; they differ only in
+ * speed, which depends on the scene and on the machine.
+ *
+ * @author Terrarium contributors
+ */
+public enum EngineType {
+    
+    /** Block CA evaluating the push rules of each block in turn. */
+    BLOCK {
+        @Override
+        InorganicCA create(int width, int height, CellGrid cells) {
+            return new InorganicCA(width, height, cells);
+        }
+    },
+    
+    /** Block CA resolving each block with one table lookup.  The default. */
+    TABLE {
+        @Override
+        InorganicCA create(int width, int height, CellGrid cells) {
+            return new InorganicCATable(width, height, cells);
+        }
+    },
+    
+    /** Block CA updating rows of up to 64 blocks with bitwise operations. */
+    BIT_SLICED {
+        @Override
+        InorganicCA create(int width, int height, CellGrid cells) {
+            return new InorganicCABitSliced(width, height, cells);
+        }
+    },
+    
+    /** Single-cell CA, moving cells one at a time. */
+    ONE_CELL {
+        @Override
+        InorganicCA create(int width, int height, CellGrid cells) {
+            return new InorganicCAOneCell(width, height, cells);
+        }
+    };
+    
+    /**
+     * Create an engine of this type around an existing padded grid.
+     * 
+     * @param width
+     * @param height
+     * @param cells
+     * @return new engine
+     * @see InorganicCA#InorganicCA(int, int, CellGrid)
+     */
+    abstract InorganicCA create(int width, int height, CellGrid cells);
+    
+    /**
+     * Create an engine of this type with an empty grid.
+     * 
+     * @param width
+     * @param height
+     * @param storage storage backend for the cell grid
+     * @return new engine
+     */
+    public CellularEngine create(int width, int height, CellStorage storage) {
+        InorganicCA ca = create(width, height, storage.create(height + 2, width + 2));
+        ca.initEmpty();
+        return ca;
+    }
+    
+    /**
+     * Create an engine of this type which takes over the grid, phase and
+     * random state of an existing engine, such as one read from a file.
+     * The grid of an InorganicCA is shared rather than copied, so the
+     * existing engine must not be used afterwards: its worker threads are
+     * shut down here, and any further updates to it would corrupt the new
+     * engine's grid.  The grids of other engines are copied into a new
+     * grid of one byte per cell.
+     * 
+     * @param source
+     * @return new engine
+     */
+    public CellularEngine adopt(CellularEngine source) {
+        source.setParallelism(1);
+        
+        if (!(source instanceof InorganicCA)) {
+            CellularEngine engine = create(source.getWidth(),
+                    source.getHeight(), CellStorage.BYTE);
+            engine.restore(source);
+            return engine;
+        }
+        
+        InorganicCA ca = (InorganicCA)source;
+        InorganicCA engine = create(ca.width, ca.height, ca.cells);
+        engine.copyStateFrom(ca);
+        engine.wakeAllTiles();
+        return engine;
+    }
+    
+    /**
+     * Look up an engine by name, ignoring case and allowing hyphens in
+     * place of underscores.
+     * 
+     * @param name
+     * @return engine type
+     */
+    public static EngineType parse(String name) {
+        try {
+            return valueOf(name.toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Unknown engine '" + name + "'.");
+        }
+    }
+}
@@ -17,9 +17,10 @@
 
 package terrarium;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Random;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * CA used to handle inorganic aspects of simulation.
@@ -29,24 +30,54 @@ import java.util.Random;
  *
  * @author Tim Vaughan <tgvaughan@gmail.com>
  */
-public class InorganicCA {
+public class InorganicCA implements CellularEngine {
     
     int width, height;
     int phase;
     
-    Random random;
+    /**
+     * Source of randomness for the update rules.  Its state is saved along
+     * with the grid so that runs can be replayed exactly.
+     */
+    SplitMixRandom random;
+    
+    /** If true, each tick uses a random phase rather than the next one. */
+    boolean randomPhase = false;
+    
+    /**
+     * Number of interior cells in each state, indexed by ordinal.  Block
+     * updates only ever swap cells, so this changes only when cells are
+     * set individually or the grid is loaded wholesale.
+     */
+    int[] population;
+    
+    /** Swaps made and blocks visited in each tile row during the last sweep. */
+    long[] rowSwaps;
+    int[] rowBlocks;
+    
+    /** Swaps made and blocks visited during the last call to updateStates(). */
+    long lastSwaps;
+    int lastActiveBlocks;
 
     public enum CellState {
-        EMPTY(Angle.NONE),
-        STEAM(Angle.UP),
-        WATER(Angle.HORIZONTAL),
-        DIRT(Angle.DIAG_DOWN),
-        WALL(Angle.NONE);
+        EMPTY(Angle.NONE, 0),
+        STEAM(Angle.HORIZONTAL, -1),
+        WATER(Angle.HORIZONTAL, 1),
+        DIRT(Angle.DIAG_DOWN, 1),
+        WALL(Angle.NONE, 0);
         
-        /** The maximum "angle" the cell type can move */
+        /**
+         * The maximum "angle" the cell type can move, measured from the
+         * direction in which it falls.
+         */
         final Angle maxAngle;
-        private CellState(Angle maxAngle) {
+        
+        /** Direction in which the cell type falls: 1 for down, -1 for up. */
+        final int gravity;
+        
+        private CellState(Angle maxAngle, int gravity) {
             this.maxAngle = maxAngle;
+            this.gravity = gravity;
         }
         /**
          * @param otherState
@@ -74,32 +105,552 @@ public class InorganicCA {
         }
     }
     
-    CellState[] cells;
+    /** Cached copy of CellState.values(), indexed by ordinal. */
+    static final CellState[] STATES = CellState.values();
+    
+    static final int EMPTY = CellState.EMPTY.ordinal();
+    static final int STEAM = CellState.STEAM.ordinal();
+    static final int WATER = CellState.WATER.ordinal();
+    static final int DIRT = CellState.DIRT.ordinal();
+    static final int WALL = CellState.WALL.ordinal();
+
+    /**
+     * Cell states, stored row-major as ordinals.  The grid is surrounded
+     * by a permanent one-cell border of WALL cells, so that the block
+     * update never needs to check whether it has run off the edge.
+     */
+    CellGrid cells;
+    
+    /** Distance between vertically adjacent cells in the padded grid. */
+    int stride;
+    
+    /** Pool used for parallel sweeps, or null for serial updates. */
+    ForkJoinPool pool;
+    
+    /** Number of distinct phases of the Margolus partition. */
+    static final int PHASES = 4;
+    
+    /**
+     * Side length of the square tiles used to track which parts of the
+     * grid are active.  Must be even so that tiles align with blocks.
+     */
+    static final int TILE_SIZE = 32;
+    
+    /** Number of blocks in each row of a tile, in every phase. */
+    static final int TILE_BLOCKS = TILE_SIZE/2;
+    
+    /** Largest number of blocks updated by one call to updateBlockSpan(). */
+    static final int MAX_SPAN = 64;
+    
+    /** Number of rows and columns of tiles. */
+    int tileRows, tileCols;
+    
+    /**
+     * Bit mask of phases during which each tile has been swept without any
+     * change to it or its neighbours.  Tiles whose masks are full have
+     * settled and are skipped by the sweep until woken.
+     */
+    byte[] tileSettled;
+    
+    /** Flags tiles containing blocks which changed during this sweep. */
+    boolean[] tileChanged;
+    
+    /**
+     * Flags tiles containing cells which have changed since the tile was
+     * last cleared by whoever is displaying the CA.
+     */
+    boolean[] tileDirty;
+    
+    static final int ALL_PHASES_SETTLED = (1 << PHASES) - 1;
+    
+    /**
+     * Flags tiles in which every block of every phase is made up of WALL
+     * cells only.  Such tiles can never change, so they are left settled
+     * even when their neighbours wake them, until one of their cells is
+     * edited.
+     */
+    boolean[] tileInert;
     
     public InorganicCA(int width, int height) {
+        this(width, height, CellStorage.BYTE);
+    }
+    
+    public InorganicCA(int width, int height, CellStorage storage) {
+        this(width, height, storage.create(height + 2, width + 2));
+        initEmpty();
+    }
+    
+    /**
+     * Create a CA around an existing padded grid, which must already have
+     * its WALL border in place.  The caller is responsible for setting the
+     * population counts to match the grid.
+     * 
+     * @param width
+     * @param height
+     * @param cells 
+     */
+    InorganicCA(int width, int height, CellGrid cells) {
         this.width = width;
         this.height = height;
         
-        cells = new CellState[width*height];
-        for (int i=0; i<cells.length; i++)
-            cells[i] = CellState.EMPTY;
+        stride = width + 2;
+        this.cells = cells;
+        
+        tileRows = (height + TILE_SIZE - 1)/TILE_SIZE;
+        tileCols = (width + TILE_SIZE - 1)/TILE_SIZE;
+        tileSettled = new byte[tileRows*tileCols];
+        tileChanged = new boolean[tileRows*tileCols];
+        tileDirty = new boolean[tileRows*tileCols];
+        Arrays.fill(tileDirty, true);
+        tileInert = new boolean[tileRows*tileCols];
+        rowSwaps = new long[tileRows];
+        rowBlocks = new int[tileRows];
+        
+        population = new int[STATES.length];
         
-        random = new Random();
+        random = new SplitMixRandom(System.nanoTime());
         phase = 0;
     }
     
+    /**
+     * Finish setting up a CA around a newly allocated grid, all of whose
+     * cells are EMPTY.
+     */
+    final void initEmpty() {
+        fillBorder();
+        population[EMPTY] = width*height;
+        
+        // An empty grid never changes, so no tile needs sweeping until
+        // something is added to it.  This lets huge, sparsely populated
+        // grids start up without a full sweep.
+        Arrays.fill(tileSettled, (byte)ALL_PHASES_SETTLED);
+    }
+    
+    /**
+     * Set every cell of the border surrounding the grid to WALL.
+     */
+    final void fillBorder() {
+        for (int j=0; j<stride; j++) {
+            cells.set(j, WALL);
+            cells.set((height+1)*stride + j, WALL);
+        }
+        for (int i=1; i<=height; i++) {
+            cells.set(i*stride, WALL);
+            cells.set(i*stride + width + 1, WALL);
+        }
+    }
+    
+    /**
+     * Take a copy of the current state of the CA, which can safely be read
+     * on another thread while this CA continues to update.  The copy is a
+     * plain block CA regardless of the type of this one.
+     * 
+     * @return snapshot
+     */
+    @Override
+    public InorganicCA snapshot() {
+        InorganicCA copy = new InorganicCA(width, height, cells.copy());
+        copy.copyStateFrom(this);
+        return copy;
+    }
+    
+    /**
+     * Return this CA to the state held in a snapshot of it, or in any
+     * other engine of the same size.  Every tile is woken, so the next
+     * sweep starts from scratch just as it would after loading the
+     * snapshot.
+     * 
+     * @param source 
+     */
+    @Override
+    public void restore(CellularEngine source) {
+        if (source.getWidth() != width || source.getHeight() != height)
+            throw new IllegalArgumentException("Snapshot size does not match.");
+        
+        ByteBuffer row = ByteBuffer.allocate(width);
+        for (int i=0; i<height; i++) {
+            row.clear();
+            source.copyRow(i, 0, row, width);
+            row.flip();
+            cells.copyFrom(index(i, 0), row, width);
+        }
+        
+        phase = source.getPhase();
+        for (CellState state : STATES)
+            population[state.ordinal()] = source.getPopulation(state);
+        random.setState(source.getSeed());
+        randomPhase = source.isRandomPhase();
+        
+        wakeAllTiles();
+        markAllDirty();
+    }
+    
+    /**
+     * @return true if the grid is a DirectCellGrid mapped from a file.
+     */
+    @Override
+    public boolean isFileBacked() {
+        return cells instanceof DirectCellGrid
+                && ((DirectCellGrid)cells).isMapped();
+    }
+    
+    @Override
+    public void flush() {
+        if (cells instanceof DirectCellGrid)
+            ((DirectCellGrid)cells).force();
+    }
+    
+    /**
+     * Copy the phase, population counts and random state of another CA
+     * with the same grid contents.
+     * 
+     * @param other 
+     */
+    void copyStateFrom(InorganicCA other) {
+        phase = other.phase;
+        System.arraycopy(other.population, 0, population, 0, population.length);
+        random.setState(other.random.getState());
+        randomPhase = other.randomPhase;
+    }
+    
+    @Override
+    public int getWidth() {
+        return width;
+    }
+    
+    @Override
+    public int getHeight() {
+        return height;
+    }
+    
+    /**
+     * Seed the random number generator.  Two CAs with the same grid, phase
+     * and seed evolve identically.
+     * 
+     * @param seed 
+     */
+    @Override
+    public void setSeed(long seed) {
+        random.setState(seed);
+    }
+    
+    /**
+     * @return current state of the random number generator, which can be
+     * passed to setSeed() to replay the run from this point.
+     */
+    @Override
+    public long getSeed() {
+        return random.getState();
+    }
+    
+    /**
+     * Choose whether the Margolus partition phase is drawn at random each
+     * tick or cycled through in order.
+     * 
+     * @param randomPhase 
+     */
+    @Override
+    public void setRandomPhase(boolean randomPhase) {
+        this.randomPhase = randomPhase;
+    }
+    
+    @Override
+    public boolean isRandomPhase() {
+        return randomPhase;
+    }
+    
+    @Override
+    public int getPhase() {
+        return phase;
+    }
+    
+    /**
+     * Recompute the population counts from scratch.  Needed only after
+     * the grid has been modified other than through setCellState().
+     */
+    void recountPopulation() {
+        Arrays.fill(population, 0);
+        for (int i=0; i<height; i++) {
+            int rowStart = index(i, 0);
+            for (int j=0; j<width; j++)
+                population[cells.get(rowStart + j)] += 1;
+        }
+    }
+    
+    /**
+     * @param state
+     * @return number of cells currently in the given state.
+     */
+    @Override
+    public int getPopulation(CellState state) {
+        return population[state.ordinal()];
+    }
+    
+    /**
+     * @return number of swaps made during the last call to updateStates().
+     */
+    @Override
+    public long getLastSwapCount() {
+        return lastSwaps;
+    }
+    
+    /**
+     * @return number of blocks (or cells, for single-cell CAs) examined
+     * during the last call to updateStates().
+     */
+    @Override
+    public int getLastActiveBlockCount() {
+        return lastActiveBlocks;
+    }
+    
+    /**
+     * @param i
+     * @param j
+     * @return index of cell (i,j) in the padded grid.
+     */
+    final int index(int i, int j) {
+        return (i+1)*stride + j + 1;
+    }
+    
+    @Override
     public CellState getCellState(int i, int j) {
         if (i<0 || i>=height ||j<0 || j>=width)
             return CellState.WALL;
         else
-            return cells[i*width + j];
+            return STATES[cells.get(index(i, j))];
     }
     
+    @Override
     public void setCellState(int i, int j, CellState newState) {
         if (i<0 || i>=height || j<0 || j>= width)
             throw new IllegalArgumentException("Cannot alter wall cells.");
-        else
-            cells[i*width + j] = newState;
+        else {
+            int index = index(i, j);
+            int oldState = cells.get(index);
+            
+            // Leaving tiles settled when nothing changes keeps large empty
+            // regions asleep while scenes are being laid down.
+            if (oldState == newState.ordinal())
+                return;
+            
+            population[oldState] -= 1;
+            population[newState.ordinal()] += 1;
+            cells.set(index, newState.ordinal());
+            if (oldState == WALL || newState == CellState.WALL)
+                wallChanged(i, j);
+            wakeTiles(i/TILE_SIZE, j/TILE_SIZE);
+            tileDirty[(i/TILE_SIZE)*tileCols + j/TILE_SIZE] = true;
+        }
+    }
+    
+    /**
+     * Set to the given state those cells of a row which are empty for it,
+     * between columns jStart (inclusive) and jEnd (exclusive).  Tiles are
+     * woken and marked dirty once per tile rather than once per cell.
+     * 
+     * @param i row
+     * @param jStart first column
+     * @param jEnd column after the last
+     * @param newState
+     * @return number of cells changed
+     */
+    @Override
+    public int fillSpan(int i, int jStart, int jEnd, CellState newState) {
+        if (i<0 || i>=height || jStart<0 || jEnd>width)
+            throw new IllegalArgumentException("Cannot alter wall cells.");
+        
+        int s = newState.ordinal();
+        int rowStart = index(i, 0);
+        int tileRow = i/TILE_SIZE;
+        int changed = 0;
+        
+        for (int j=jStart; j<jEnd; ) {
+            int tc = j/TILE_SIZE;
+            int tileEnd = Math.min((tc+1)*TILE_SIZE, jEnd);
+            int first = j;
+            
+            int tileChanged = 0;
+            for (; j<tileEnd; j++) {
+                int oldState = cells.get(rowStart + j);
+                if (STATES[oldState].isEmptyFor(newState)) {
+                    population[oldState] -= 1;
+                    cells.set(rowStart + j, s);
+                    tileChanged += 1;
+                }
+            }
+            
+            if (tileChanged > 0) {
+                population[s] += tileChanged;
+                
+                // WALL replaces every other state but is never replaced,
+                // so walls can only have been added here.
+                if (s == WALL)
+                    wallChanged(i, first);
+                wakeTiles(tileRow, tc);
+                tileDirty[tileRow*tileCols + tc] = true;
+                changed += tileChanged;
+            }
+        }
+        
+        return changed;
+    }
+    
+    /**
+     * Bring up to date the inert flags of the tiles with blocks containing
+     * cell (i,j), after it has been changed to or from WALL.  Tiles which
+     * become inert are settled and those which cease to be are woken.
+     * 
+     * @param i
+     * @param j 
+     */
+    void wallChanged(int i, int j) {
+        int tr = i/TILE_SIZE;
+        int tc = j/TILE_SIZE;
+        
+        // Blocks reach one cell beyond the bottom and right edges of the
+        // tile holding their top-left cells.
+        boolean top = i%TILE_SIZE == 0 && tr > 0;
+        boolean left = j%TILE_SIZE == 0 && tc > 0;
+        
+        updateInert(tr, tc);
+        if (top)
+            updateInert(tr-1, tc);
+        if (left)
+            updateInert(tr, tc-1);
+        if (top && left)
+            updateInert(tr-1, tc-1);
+    }
+    
+    /**
+     * Recompute the inert flag of a tile.
+     * 
+     * @param tr tile row
+     * @param tc tile column
+     */
+    private void updateInert(int tr, int tc) {
+        int t = tr*tileCols + tc;
+        boolean inert = isInert(tr, tc);
+        if (inert != tileInert[t]) {
+            tileInert[t] = inert;
+            tileSettled[t] = inert ? (byte)ALL_PHASES_SETTLED : 0;
+        }
+    }
+    
+    /**
+     * @param tr tile row
+     * @param tc tile column
+     * @return true if every cell of the given tile, along with those in
+     * the row below and the column to its right, is WALL.  These may lie
+     * in the border.
+     */
+    private boolean isInert(int tr, int tc) {
+        int iEnd = Math.min((tr+1)*TILE_SIZE, height);
+        int jEnd = Math.min((tc+1)*TILE_SIZE, width);
+        for (int i=tr*TILE_SIZE; i<=iEnd; i++) {
+            int rowStart = index(i, 0);
+            for (int j=tc*TILE_SIZE; j<=jEnd; j++) {
+                if (cells.get(rowStart + j) != WALL)
+                    return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Mark as dirty the tile containing the cell at the given padded grid
+     * index.
+     * 
+     * @param index 
+     */
+    void markDirty(int index) {
+        int i = index/stride - 1;
+        int j = index%stride - 1;
+        tileDirty[(i/TILE_SIZE)*tileCols + j/TILE_SIZE] = true;
+    }
+    
+    /**
+     * Wake a tile together with its eight neighbours, which between them
+     * hold every block that can see a change made within the tile.
+     * 
+     * @param tileRow
+     * @param tileCol
+     */
+    void wakeTiles(int tileRow, int tileCol) {
+        int rowMin = Math.max(tileRow-1, 0);
+        int rowMax = Math.min(tileRow+1, tileRows-1);
+        int colMin = Math.max(tileCol-1, 0);
+        int colMax = Math.min(tileCol+1, tileCols-1);
+        for (int tr=rowMin; tr<=rowMax; tr++) {
+            for (int tc=colMin; tc<=colMax; tc++) {
+                int t = tr*tileCols + tc;
+                if (!tileInert[t])
+                    tileSettled[t] = 0;
+            }
+        }
+    }
+    
+    /**
+     * Wake every tile in the grid apart from the inert ones, which are
+     * first identified afresh.  Needed after the grid has been modified
+     * other than through setCellState() or fillSpan().
+     */
+    public void wakeAllTiles() {
+        for (int tr=0; tr<tileRows; tr++) {
+            for (int tc=0; tc<tileCols; tc++) {
+                int t = tr*tileCols + tc;
+                tileInert[t] = isInert(tr, tc);
+                tileSettled[t] = tileInert[t] ? (byte)ALL_PHASES_SETTLED : 0;
+            }
+        }
+    }
+    
+    /**
+     * Mark every tile as dirty, forcing the whole CA to be redisplayed.
+     */
+    @Override
+    public void markAllDirty() {
+        Arrays.fill(tileDirty, true);
+    }
+    
+    @Override
+    public int getTileSize() {
+        return TILE_SIZE;
+    }
+    
+    @Override
+    public int getTileRows() {
+        return tileRows;
+    }
+    
+    @Override
+    public int getTileCols() {
+        return tileCols;
+    }
+    
+    @Override
+    public boolean clearTileDirty(int tr, int tc) {
+        int t = tr*tileCols + tc;
+        boolean dirty = tileDirty[t];
+        tileDirty[t] = false;
+        return dirty;
+    }
+    
+    @Override
+    public void copyRow(int i, int j, ByteBuffer dst, int length) {
+        cells.copyTo(index(i, j), dst, length);
+    }
+    
+    /**
+     * @return number of tiles which will be visited by the next sweep.
+     */
+    @Override
+    public int getActiveTileCount() {
+        int count = 0;
+        for (byte settled : tileSettled) {
+            if (settled != ALL_PHASES_SETTLED)
+                count += 1;
+        }
+        return count;
     }
 
     protected void swapStates(int i1, int j1, int i2, int j2) {
@@ -108,9 +659,20 @@ public class InorganicCA {
         setCellState(i2,j2, tmp);
     }
     
-    private boolean pushState(CellState state, int i1, int j1, int i2, int j2) {
-        if (getCellState(i1, j1)==state && getCellState(i2, j2).isEmptyFor(state)) {
-            swapStates(i1, j1, i2, j2);
+    /**
+     * Unchecked equivalent of pushState() which operates directly on
+     * padded grid indices.
+     * 
+     * @param state ordinal of state to push
+     * @param from index of source cell
+     * @param to index of destination cell
+     * @return true if the cells were swapped.
+     */
+    private boolean pushCell(int state, int from, int to) {
+        int toState = cells.get(to);
+        if (cells.get(from)==state && toState < state) {
+            cells.set(from, toState);
+            cells.set(to, state);
             return true;
         } else
             return false;
@@ -118,68 +680,262 @@ public class InorganicCA {
     
     /**
      * Updates the state of a single 3x3 block of cells centred on (i,j).
+     * Cells may lie at most one row or column outside of the grid.
      * 
      * @param i
      * @param j 
      */
     public void updateBlock(int i, int j) {
+        updateBlockAt(index(i, j));
+    }
+    
+    /**
+     * Updates the state of the 2x2 block of cells whose top-left corner
+     * is at the given index of the padded grid.
+     * 
+     * @param tl index of top-left cell
+     * @return number of swaps made, zero if the block is unchanged.
+     */
+    protected int updateBlockAt(int tl) {
+        int tr = tl + 1;
+        int bl = tl + stride;
+        int br = bl + 1;
+        
+        int swaps = 0;
 
-        pushState(CellState.DIRT, i,j, i+1,j+1);
-        pushState(CellState.DIRT, i,j+1, i+1,j);
-        pushState(CellState.DIRT, i,j, i+1, j);
-        pushState(CellState.DIRT, i,j+1, i+1, j+1);
-        
-        pushState(CellState.WATER, i,j, i+1,j+1);
-        pushState(CellState.WATER, i,j+1, i+1,j);
-        pushState(CellState.WATER, i,j, i+1, j);
-        pushState(CellState.WATER, i,j+1, i+1, j+1);
-        
-        if (!pushState(CellState.WATER, i,j, i,j+1))
-            pushState(CellState.WATER, i,j+1, i,j);
-        if (!pushState(CellState.WATER, i+1,j+1, i+1,j))
-            pushState(CellState.WATER, i+1,j, i+1,j+1);
-
+        if (pushCell(DIRT, tl, br)) swaps++;
+        if (pushCell(DIRT, tr, bl)) swaps++;
+        if (pushCell(DIRT, tl, bl)) swaps++;
+        if (pushCell(DIRT, tr, br)) swaps++;
+        
+        if (pushCell(WATER, tl, br)) swaps++;
+        if (pushCell(WATER, tr, bl)) swaps++;
+        if (pushCell(WATER, tl, bl)) swaps++;
+        if (pushCell(WATER, tr, br)) swaps++;
+        
+        if (pushCell(WATER, tl, tr) || pushCell(WATER, tr, tl))
+            swaps++;
+        if (pushCell(WATER, br, bl) || pushCell(WATER, bl, br))
+            swaps++;
+        
+        // Steam obeys the water rules turned upside down.  Walls are never
+        // pushed, and no state is dense enough to displace them.
+        if (pushCell(STEAM, bl, tr)) swaps++;
+        if (pushCell(STEAM, br, tl)) swaps++;
+        if (pushCell(STEAM, bl, tl)) swaps++;
+        if (pushCell(STEAM, br, tr)) swaps++;
+        
+        if (pushCell(STEAM, bl, br) || pushCell(STEAM, br, bl))
+            swaps++;
+        if (pushCell(STEAM, tr, tl) || pushCell(STEAM, tl, tr))
+            swaps++;
+        
+        return swaps;
+    }
+    
+    /**
+     * Updates a horizontal run of adjacent blocks, adding the number of
+     * swaps made to the count for the tile row.
+     * 
+     * @param tr tile row containing the blocks' top-left cells
+     * @param tl index of top-left cell of first block
+     * @param count number of blocks, at most MAX_SPAN
+     * @return mask with bit k set if block k made any swaps.
+     */
+    protected long updateBlockSpan(int tr, int tl, int count) {
+        long changed = 0;
+        int swaps = 0;
+        for (int k=0; k<count; k++) {
+            int blockSwaps = updateBlockAt(tl + 2*k);
+            if (blockSwaps > 0) {
+                changed |= 1L << k;
+                swaps += blockSwaps;
+            }
+        }
+        rowSwaps[tr] += swaps;
+        return changed;
     }
     
+    @Override
     public void updateStates() {
 
-        //phase = random.nextInt(4);
-        phase = (phase+1)%4;
-        for (int i=phase/2; i<height; i += 2) {
-            for (int j=phase%2; j<width; j += 2) {
-                updateBlock(i,j);
+        if (randomPhase)
+            phase = random.nextInt(PHASES);
+        else
+            phase = (phase+1)%PHASES;
+        
+        if (pool == null)
+            updateTileRows(0, tileRows);
+        else
+            pool.invoke(new StripTask(0, tileRows));
+        
+        lastSwaps = 0;
+        lastActiveBlocks = 0;
+        for (int tr=0; tr<tileRows; tr++) {
+            lastSwaps += rowSwaps[tr];
+            lastActiveBlocks += rowBlocks[tr];
+        }
+        
+        // Tiles which were swept without change have settled for this
+        // phase, unless a change nearby wakes them again.
+        int phaseBit = 1 << phase;
+        for (int t=0; t<tileSettled.length; t++)
+            tileSettled[t] |= phaseBit;
+        
+        for (int t=0; t<tileChanged.length; t++) {
+            if (tileChanged[t]) {
+                tileChanged[t] = false;
+                
+                int tr = t/tileCols;
+                int tc = t%tileCols;
+                wakeTiles(tr, tc);
+                
+                // Blocks straddle the right and bottom tile edges.
+                tileDirty[t] = true;
+                if (tc+1 < tileCols)
+                    tileDirty[t+1] = true;
+                if (tr+1 < tileRows) {
+                    tileDirty[t+tileCols] = true;
+                    if (tc+1 < tileCols)
+                        tileDirty[t+tileCols+1] = true;
+                }
             }
         }
     }
-
+    
+    /**
+     * Update all blocks of the current phase whose top-left cells lie in
+     * active tiles within the given range of tile rows, recording the
+     * number of swaps made and blocks visited in each row.
+     * 
+     * @param first first tile row to update
+     * @param last one past the last tile row to update
+     */
+    void updateTileRows(int first, int last) {
+        for (int tr=first; tr<last; tr++) {
+            int iStart = tr*TILE_SIZE + phase/2;
+            int iEnd = Math.min((tr+1)*TILE_SIZE, height);
+            int blockRows = (iEnd - iStart + 1)/2;
+            
+            rowSwaps[tr] = 0;
+            int blocks = 0;
+            
+            // Runs of adjacent active tiles are swept together, in spans
+            // as long as updateBlockSpan() allows.
+            int tc = 0;
+            while (tc < tileCols) {
+                if (tileSettled[tr*tileCols + tc] == ALL_PHASES_SETTLED) {
+                    tc += 1;
+                    continue;
+                }
+                
+                int runStart = tc;
+                while (tc < tileCols && tc - runStart < MAX_SPAN/TILE_BLOCKS
+                        && tileSettled[tr*tileCols + tc] != ALL_PHASES_SETTLED)
+                    tc += 1;
+                
+                int jStart = runStart*TILE_SIZE + phase%2;
+                int jEnd = Math.min(tc*TILE_SIZE, width);
+                int blockCols = (jEnd - jStart + 1)/2;
+                
+                long changed = 0;
+                for (int i=iStart; i<iEnd; i += 2)
+                    changed |= updateBlockSpan(tr, index(i, jStart), blockCols);
+                
+                // Every tile but the last in the grid holds exactly
+                // TILE_BLOCKS blocks of each row.
+                for (int t=tr*tileCols + runStart; changed != 0; t++) {
+                    if ((changed & ((1L << TILE_BLOCKS) - 1)) != 0)
+                        tileChanged[t] = true;
+                    changed >>>= TILE_BLOCKS;
+                }
+                blocks += blockRows*blockCols;
+            }
+            
+            rowBlocks[tr] = blocks;
+        }
+    }
+    
+    /**
+     * Set the number of threads used to update the CA.  Blocks within a
+     * single phase of the Margolus partition are disjoint, so horizontal
+     * strips of them can be updated concurrently with results identical
+     * to those of a serial sweep.
+     * 
+     * @param parallelism number of threads, 1 for serial updates
+     */
     @Override
-    public String toString() {
-        Map<CellState,Integer> histogram = new HashMap<>();
-        for (CellState state : CellState.values())
-            histogram.put(state, 0);
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism must be positive.");
+        
+        if (pool != null)
+            pool.shutdown();
         
-        for (CellState cell : cells) {
-            histogram.put(cell, histogram.get(cell) + 1);
+        if (parallelism > 1)
+            pool = new ForkJoinPool(parallelism);
+        else
+            pool = null;
+    }
+    
+    /**
+     * @return number of threads used to update the CA.
+     */
+    @Override
+    public int getParallelism() {
+        return pool != null ? pool.getParallelism() : 1;
+    }
+    
+    /**
+     * Task updating a strip of tile rows, splitting it in half until
+     * only a single row of tiles remains.
+     */
+    class StripTask extends RecursiveAction {
+        
+        private static final long serialVersionUID = 1L;
+        
+        final int first, last;
+
+        StripTask(int first, int last) {
+            this.first = first;
+            this.last = last;
         }
 
+        @Override
+        protected void compute() {
+            if (last - first <= 1) {
+                updateTileRows(first, last);
+            } else {
+                int mid = (first + last) >>> 1;
+                invokeAll(new StripTask(first, mid), new StripTask(mid, last));
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
         StringBuilder sb = new StringBuilder();
-        for (CellState state : CellState.values()) {
-            sb.append(state).append(":").append(histogram.get(state)).append(" ");
+        for (CellState state : STATES) {
+            sb.append(state).append(":").append(population[state.ordinal()]).append(" ");
         }
         
         return sb.toString();
     }
     
+    @Override
     public String serialize() {
         StringBuilder sb = new StringBuilder();
         sb.append("{");
         sb.append("\"width\": ").append(width);
         sb.append(", \"height\": ").append(height);
         sb.append(", \"states\": [");
-        for (int i=0; i<cells.length; i++) {
-            if (i>0)
-                sb.append(",");
-            sb.append(cells[i].ordinal());
+        for (int i=0; i<height; i++) {
+            int rowStart = index(i, 0);
+            for (int j=0; j<width; j++) {
+                if (i>0 || j>0)
+                    sb.append(",");
+                sb.append(cells.get(rowStart + j));
+            }
         }
         sb.append("]}");
         
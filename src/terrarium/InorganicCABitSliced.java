@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2026 Terrarium contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package terrarium;
+
+import java.util.Arrays;
+
+/**
+ * Block CA which updates a whole row of blocks at once using bit-sliced
+ * arithmetic.
+ * 
+ * The states of each of the four cells of up to 64 blocks are spread
+ * across three bit planes, held in longs, with one bit per block.  Each
+ * push rule of InorganicCA.updateBlockAt() then becomes a handful of
+ * bitwise operations which test and swap the cells of every block in the
+ * row simultaneously.  The sweep joins up runs of adjacent active tiles,
+ * so that spans fill all 64 lanes wherever four or more such tiles sit
+ * side by side.  Spans too short to be worth packing fall back to the
+ * lookup table of InorganicCATable.
+ * 
+ * Because the rules act on each block independently, checking every
+ * possible block configuration proves the bit-sliced rules equivalent to
+ * the reference rules.  InorganicCABitSlicedTest does this.
+ * 
+ * Packing and unpacking the lanes costs more than the table lookups it
+ * saves, so this engine is slower than InorganicCATable.  It is faster
+ * than the plain block engine on busy scenes, where long runs of tiles
+ * are active.
+ *
+ * @author Terrarium contributors
+ */
+public class InorganicCABitSliced extends InorganicCATable {
+    
+    /** Number of bit planes needed to hold a state ordinal. */
+    static final int BITS = 3;
+    
+    /** Positions of cells within a block. */
+    static final int TL = 0, TR = 1, BL = 2, BR = 3;
+    
+    /** Shorter spans are updated one block at a time. */
+    static final int MIN_LANES = 4;
+    
+    /**
+     * Working storage for one row of blocks.
+     */
+    static final class Lanes {
+        /** Bit plane b of cell position c is held in planes[c*BITS + b]. */
+        final long[] planes = new long[4*BITS];
+        
+        /** Lanes changed and swaps made by the last call to apply(). */
+        long changed;
+        int swaps;
+    }
+    
+    /**
+     * Lane storage for each tile row, so that strips of tile rows can be
+     * updated concurrently.
+     */
+    final Lanes[] lanes;
+    
+    public InorganicCABitSliced(int width, int height) {
+        this(width, height, CellStorage.BYTE);
+    }
+    
+    public InorganicCABitSliced(int width, int height, CellStorage storage) {
+        this(width, height, storage.create(height + 2, width + 2));
+        initEmpty();
+    }
+    
+    /**
+     * Create a CA around an existing padded grid.
+     * 
+     * @param width
+     * @param height
+     * @param cells 
+     * @see InorganicCA#InorganicCA(int, int, CellGrid)
+     */
+    InorganicCABitSliced(int width, int height, CellGrid cells) {
+        super(width, height, cells);
+        
+        lanes = new Lanes[tileRows];
+        for (int tr=0; tr<tileRows; tr++)
+            lanes[tr] = new Lanes();
+    }
+    
+    /**
+     * @param p bit planes
+     * @param cell cell position
+     * @param state
+     * @return mask of lanes in which the cell holds the given state.
+     */
+    static long equal(long[] p, int cell, int state) {
+        long mask = -1L;
+        for (int b=0; b<BITS; b++) {
+            long x = p[cell*BITS + b];
+            mask &= ((state >> b) & 1) != 0 ? x : ~x;
+        }
+        return mask;
+    }
+    
+    /**
+     * @param p bit planes
+     * @param cell cell position
+     * @param state
+     * @return mask of lanes in which the cell holds a state with a
+     * smaller ordinal than the given one.
+     */
+    static long less(long[] p, int cell, int state) {
+        long less = 0, equal = -1L;
+        for (int b=BITS-1; b>=0; b--) {
+            long x = p[cell*BITS + b];
+            if (((state >> b) & 1) != 0) {
+                less |= equal & ~x;
+                equal &= x;
+            } else
+                equal &= ~x;
+        }
+        return less;
+    }
+    
+    /**
+     * Bit-sliced equivalent of InorganicCA.pushCell(), applied to the
+     * given lanes only.
+     * 
+     * @param lanes lane storage
+     * @param state ordinal of state to push
+     * @param from position of source cell
+     * @param to position of destination cell
+     * @param mask lanes in which to attempt the push
+     * @return mask of lanes in which the cells were swapped.
+     */
+    static long push(Lanes lanes, int state, int from, int to, long mask) {
+        long[] p = lanes.planes;
+        long m = mask & equal(p, from, state) & less(p, to, state);
+        if (m == 0)
+            return 0;
+        
+        for (int b=0; b<BITS; b++) {
+            long f = p[from*BITS + b];
+            long t = p[to*BITS + b];
+            p[from*BITS + b] = (f & ~m) | (t & m);
+            p[to*BITS + b] = (t & ~m) | (((state >> b) & 1) != 0 ? m : 0);
+        }
+        
+        lanes.changed |= m;
+        lanes.swaps += Long.bitCount(m);
+        return m;
+    }
+    
+    /**
+     * Apply the block rules to every lane.  Must follow
+     * InorganicCA.updateBlockAt() rule for rule.
+     * 
+     * @param lanes lane storage holding the blocks
+     * @param mask lanes in use
+     */
+    static void apply(Lanes lanes, long mask) {
+        lanes.changed = 0;
+        lanes.swaps = 0;
+        
+        push(lanes, DIRT, TL, BR, mask);
+        push(lanes, DIRT, TR, BL, mask);
+        push(lanes, DIRT, TL, BL, mask);
+        push(lanes, DIRT, TR, BR, mask);
+        
+        push(lanes, WATER, TL, BR, mask);
+        push(lanes, WATER, TR, BL, mask);
+        push(lanes, WATER, TL, BL, mask);
+        push(lanes, WATER, TR, BR, mask);
+        
+        long moved = push(lanes, WATER, TL, TR, mask);
+        push(lanes, WATER, TR, TL, mask & ~moved);
+        moved = push(lanes, WATER, BR, BL, mask);
+        push(lanes, WATER, BL, BR, mask & ~moved);
+        
+        push(lanes, STEAM, BL, TR, mask);
+        push(lanes, STEAM, BR, TL, mask);
+        push(lanes, STEAM, BL, TL, mask);
+        push(lanes, STEAM, BR, TR, mask);
+        
+        moved = push(lanes, STEAM, BL, BR, mask);
+        push(lanes, STEAM, BR, BL, mask & ~moved);
+        moved = push(lanes, STEAM, TR, TL, mask);
+        push(lanes, STEAM, TL, TR, mask & ~moved);
+    }
+    
+    /**
+     * Set the state of a cell in one lane, which must currently be zero.
+     */
+    private static void load(long[] p, int cell, int lane, int state) {
+        for (int b=0; b<BITS; b++)
+            p[cell*BITS + b] |= (long)((state >> b) & 1) << lane;
+    }
+    
+    /**
+     * @return state of a cell in one lane.
+     */
+    private static int extract(long[] p, int cell, int lane) {
+        int state = 0;
+        for (int b=0; b<BITS; b++)
+            state |= (int)((p[cell*BITS + b] >>> lane) & 1) << b;
+        return state;
+    }
+
+    @Override
+    protected long updateBlockSpan(int tr, int tl, int count) {
+        if (count < MIN_LANES)
+            return super.updateBlockSpan(tr, tl, count);
+        
+        Lanes l = lanes[tr];
+        long[] p = l.planes;
+        Arrays.fill(p, 0);
+        
+        for (int k=0; k<count; k++) {
+            int a = tl + 2*k;
+            int c = a + stride;
+            load(p, TL, k, cells.get(a));
+            load(p, TR, k, cells.get(a + 1));
+            load(p, BL, k, cells.get(c));
+            load(p, BR, k, cells.get(c + 1));
+        }
+        
+        apply(l, count == 64 ? -1L : (1L << count) - 1);
+        
+        for (long changed = l.changed; changed != 0; changed &= changed - 1) {
+            int k = Long.numberOfTrailingZeros(changed);
+            int a = tl + 2*k;
+            int c = a + stride;
+            cells.set(a, extract(p, TL, k));
+            cells.set(a + 1, extract(p, TR, k));
+            cells.set(c, extract(p, BL, k));
+            cells.set(c + 1, extract(p, BR, k));
+        }
+        
+        rowSwaps[tr] += l.swaps;
+        return l.changed;
+    }
+}
@@ -17,8 +17,7 @@
 
 package terrarium;
 
-import java.awt.Point;
-import java.util.*;
+import java.util.Arrays;
 
 /**
  * CA used to handle inorganic aspects of simulation.
@@ -26,20 +25,99 @@ import java.util.*;
  * This is a single-cell CA which allows all cells to update once per frame, in some order, even if
  * they were initially unable to update.
  * 
+ * Cells are referred to by their indices in the padded grid throughout, so
+ * that updates allocate nothing once the work queue and the bitmaps of
+ * moved cells have reached their working size.
+ * 
  * @author Glen Robertson
  */
 public class InorganicCAOneCell extends InorganicCA {
     
-    /** Cheap "random" left/right decider */
-    boolean moveLeftFirst = true;
+    static final Angle[] ANGLES = Angle.values();
+    
+    /** Ordinal of maximum angle for each state, indexed by state ordinal. */
+    static final int[] MAX_ANGLE = new int[STATES.length];
+    
+    /** Direction of fall for each state, indexed by state ordinal. */
+    static final int[] GRAVITY = new int[STATES.length];
+    
+    static {
+        for (CellState state : STATES) {
+            MAX_ANGLE[state.ordinal()] = state.maxAngle.ordinal();
+            GRAVITY[state.ordinal()] = state.gravity;
+        }
+    }
+    
+    /**
+     * Bitmaps, one per tile, of the cells which have been moved into
+     * during the current updateStates call.  A tile's bitmap is allocated
+     * the first time one of its cells is moved into, so that settled and
+     * empty regions of large sparse grids cost nothing.
+     */
+    long[][] updated;
+    
+    /** Tiles whose bitmaps have been allocated, in order of allocation. */
+    int[] updatedTiles;
+    int updatedTileCount;
+    
+    /** Ring buffer of cell indices waiting to be checked. */
+    int[] queue;
+    int queueHead, queueSize;
     
     public InorganicCAOneCell(int width, int height) {
-        super(width, height);
+        this(width, height, CellStorage.BYTE);
+    }
+    
+    public InorganicCAOneCell(int width, int height, CellStorage storage) {
+        this(width, height, storage.create(height + 2, width + 2));
+        initEmpty();
+    }
+    
+    /**
+     * Create a CA around an existing padded grid.
+     * 
+     * @param width
+     * @param height
+     * @param cells 
+     * @see InorganicCA#InorganicCA(int, int, CellGrid)
+     */
+    InorganicCAOneCell(int width, int height, CellGrid cells) {
+        super(width, height, cells);
+        
+        updated = new long[tileRows*tileCols][];
+        updatedTiles = new int[tileRows*tileCols];
+        updatedTileCount = 0;
+        queue = new int[1024];
+    }
+    
+    /**
+     * Cells are moved one at a time in the order they are queued, each
+     * move depending on those before it, so this CA always updates on a
+     * single thread.
+     * 
+     * @param parallelism must be 1
+     */
+    @Override
+    public void setParallelism(int parallelism) {
+        if (parallelism != 1)
+            throw new IllegalArgumentException(
+                    "The one-cell engine runs on a single thread.");
     }
     
-    private boolean pushState(int i1, int j1, int i2, int j2) {
-        if (getCellState(i2, j2).isEmptyFor(getCellState(i1, j1))) {
-            swapStates(i1, j1, i2, j2);
+    @Override
+    public int getParallelism() {
+        return 1;
+    }
+    
+    private boolean pushState(int from, int to) {
+        int fromState = cells.get(from);
+        int toState = cells.get(to);
+        if (toState < fromState) {
+            cells.set(from, toState);
+            cells.set(to, fromState);
+            markDirty(from);
+            markDirty(to);
+            lastSwaps += 1;
             return true;
         } else
             return false;
@@ -48,67 +126,140 @@ public class InorganicCAOneCell extends InorganicCA {
     /**
      * Updates the state of a single cell.
      * 
-     * @param i
-     * @param j
-     * @param angle the angle at which to try to move the cell
+     * @param p index of cell
+     * @param angle the angle at which to try to move the cell, measured
+     * from the direction in which it falls
+     * @return index of cell moved into, or -1 if the cell did not move.
      */
-    public Point updateCell(int i, int j, Angle angle) {
-        if (angle.isBiggerThan(getCellState(i, j).maxAngle)) {
-            return null;
+    int updateCell(int p, Angle angle) {
+        int state = cells.get(p);
+        if (angle.ordinal() > MAX_ANGLE[state]) {
+            return -1;
         }
-        int nextI = i + angle.dy;
+        int next = p + angle.dy*GRAVITY[state]*stride;
         int dX = angle.dx;
         
-        // "Randomise" left/right movement
-        if (moveLeftFirst) {
+        // Randomise left/right movement
+        if (dX != 0 && random.nextBoolean()) {
             dX = -dX;
         }
-        moveLeftFirst = !moveLeftFirst;
-        if (pushState(i, j, nextI, j + dX)) {
-            return new Point(nextI, j + dX);
+        if (pushState(p, next + dX)) {
+            return next + dX;
         }
-        if (pushState(i, j, nextI, j - dX)) {
-            return new Point(nextI, j - dX);
+        if (pushState(p, next - dX)) {
+            return next - dX;
         }
         
-        return null;
+        return -1;
     }
     
-    /** Returns a list of the 8 neighbouring points (or fewer if they are off the edge) */
-    public List<Point> neighbours(Point p) {
-        List<Point> neighbours = new ArrayList<>();
-        for (int i = Math.max(p.x - 1, 0); i < Math.min(p.x + 2, height); i++) {
-            for (int j = Math.max(p.y - 1, 0); j < Math.min(p.y + 2, width); j++) {
-                if (!(i == p.x && j == p.y)) {
-                    neighbours.add(new Point(i, j));
+    /** Queues the 8 neighbouring cells (or fewer if they are off the edge) */
+    void enqueueNeighbours(int p) {
+        int pi = p/stride - 1;
+        int pj = p%stride - 1;
+        for (int i = Math.max(pi - 1, 0); i < Math.min(pi + 2, height); i++) {
+            int rowStart = index(i, 0);
+            for (int j = Math.max(pj - 1, 0); j < Math.min(pj + 2, width); j++) {
+                if (!(i == pi && j == pj)) {
+                    enqueue(rowStart + j);
                 }
             }
         }
-        return neighbours;
     }
     
+    private void enqueue(int p) {
+        if (queueSize == queue.length) {
+            // Unroll the ring into a buffer of twice the size.
+            int[] newQueue = new int[2*queue.length];
+            int firstPart = queue.length - queueHead;
+            System.arraycopy(queue, queueHead, newQueue, 0, firstPart);
+            System.arraycopy(queue, 0, newQueue, firstPart, queueHead);
+            queue = newQueue;
+            queueHead = 0;
+        }
+        queue[(queueHead + queueSize) & (queue.length-1)] = p;
+        queueSize += 1;
+    }
+    
+    /**
+     * @param p index of cell
+     * @return index of the tile containing the cell.
+     */
+    private int tileOf(int p) {
+        int i = p/stride - 1;
+        int j = p%stride - 1;
+        return (i/TILE_SIZE)*tileCols + j/TILE_SIZE;
+    }
+    
+    /**
+     * @param p index of cell
+     * @return position of the cell's bit in its tile's bitmap.
+     */
+    private int bitOf(int p) {
+        int i = p/stride - 1;
+        int j = p%stride - 1;
+        return (i%TILE_SIZE)*TILE_SIZE + j%TILE_SIZE;
+    }
+    
+    private boolean isUpdated(int p) {
+        long[] bits = updated[tileOf(p)];
+        if (bits == null)
+            return false;
+        int bit = bitOf(p);
+        return (bits[bit >>> 6] & (1L << bit)) != 0;
+    }
+    
+    private void markUpdated(int p) {
+        int t = tileOf(p);
+        long[] bits = updated[t];
+        if (bits == null) {
+            bits = new long[TILE_SIZE*TILE_SIZE/64];
+            updated[t] = bits;
+            updatedTiles[updatedTileCount++] = t;
+        }
+        int bit = bitOf(p);
+        bits[bit >>> 6] |= 1L << bit;
+    }
+    
+    private int dequeue() {
+        int p = queue[queueHead];
+        queueHead = (queueHead + 1) & (queue.length-1);
+        queueSize -= 1;
+        return p;
+    }
+    
+    @Override
     public void updateStates() {
         // Each cell can be updated only once per updateStates call
-        Set<Point> updatedCells = new HashSet<>();
-        for (Angle angle : Angle.values()) {
+        for (int k = 0; k < updatedTileCount; k++) {
+            Arrays.fill(updated[updatedTiles[k]], 0L);
+        }
+        
+        lastSwaps = 0;
+        lastActiveBlocks = 0;
+        
+        for (Angle angle : ANGLES) {
             if (angle == Angle.NONE) {
                 continue;
             }
-            List<Point> toCheck = new LinkedList<>();
+            queueHead = 0;
+            queueSize = 0;
             for (int i = 0; i < height; i++) {
+                int rowStart = index(i, 0);
                 for (int j = 0; j < width; j++) {
-                    if (!angle.isBiggerThan(getCellState(i, j).maxAngle)) { // speed optimisation
-                        toCheck.add(new Point(i, j));
+                    if (angle.ordinal() <= MAX_ANGLE[cells.get(rowStart + j)]) { // speed optimisation
+                        enqueue(rowStart + j);
                     }
                 }
             }
-            while (!toCheck.isEmpty()) {
-                Point p = toCheck.remove(0);
-                if (!updatedCells.contains(p)) {
-                    Point updated = updateCell(p.x, p.y, angle);
-                    if (updated != null) {
-                        updatedCells.add(updated);
-                        toCheck.addAll(neighbours(p));
+            while (queueSize > 0) {
+                int p = dequeue();
+                if (!isUpdated(p)) {
+                    lastActiveBlocks += 1;
+                    int moved = updateCell(p, angle);
+                    if (moved >= 0) {
+                        markUpdated(moved);
+                        enqueueNeighbours(p);
                     }
                 }
             }
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2026 Terrarium contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package terrarium;
+
+/**
+ * Block CA which resolves each 2x2 Margolus block with a single lookup in
+ * a precomputed transition table rather than by evaluating the sequence of
+ * push rules in InorganicCA.updateBlockAt().
+ * 
+ * The table is produced by running the rules of InorganicCA itself over
+ * every possible block configuration, so the two are equivalent by
+ * construction.
+ *
+ * @author Terrarium contributors
+ */
+public class InorganicCATable extends InorganicCA {
+    
+    /** Number of distinct cell states. */
+    static final int NSTATES = STATES.length;
+    
+    /**
+     * Block transitions indexed by the base-NSTATES code of the block's
+     * (top-left, top-right, bottom-left, bottom-right) states.  Entries
+     * hold the resulting states packed as 4-bit fields in that order,
+     * followed by the number of swaps made, or -1 if the block is left
+     * unchanged.
+     */
+    static final int[] TRANSITIONS = buildTransitions();
+    
+    public InorganicCATable(int width, int height) {
+        super(width, height);
+    }
+    
+    public InorganicCATable(int width, int height, CellStorage storage) {
+        super(width, height, storage);
+    }
+    
+    /**
+     * Create a CA around an existing padded grid.
+     * 
+     * @param width
+     * @param height
+     * @param cells 
+     * @see InorganicCA#InorganicCA(int, int, CellGrid)
+     */
+    InorganicCATable(int width, int height, CellGrid cells) {
+        super(width, height, cells);
+    }
+    
+    /**
+     * Evaluate the reference block rules on every possible 2x2 block.
+     * 
+     * @return transition table
+     */
+    private static int[] buildTransitions() {
+        int nConfigs = NSTATES*NSTATES*NSTATES*NSTATES;
+        int[] table = new int[nConfigs];
+        
+        InorganicCA scratch = new InorganicCA(2, 2);
+        int tl = scratch.index(0, 0);
+        int tr = scratch.index(0, 1);
+        int bl = scratch.index(1, 0);
+        int br = scratch.index(1, 1);
+        
+        for (int code=0; code<nConfigs; code++) {
+            scratch.cells.set(tl, code/(NSTATES*NSTATES*NSTATES));
+            scratch.cells.set(tr, code/(NSTATES*NSTATES) % NSTATES);
+            scratch.cells.set(bl, code/NSTATES % NSTATES);
+            scratch.cells.set(br, code % NSTATES);
+            
+            int swaps = scratch.updateBlockAt(tl);
+            
+            int a = scratch.cells.get(tl);
+            int b = scratch.cells.get(tr);
+            int c = scratch.cells.get(bl);
+            int d = scratch.cells.get(br);
+            
+            if (((a*NSTATES + b)*NSTATES + c)*NSTATES + d == code)
+                table[code] = -1;
+            else
+                table[code] = a | (b << 4) | (c << 8) | (d << 12) | (swaps << 16);
+        }
+        
+        return table;
+    }
+
+    @Override
+    protected int updateBlockAt(int tl) {
+        int tr = tl + 1;
+        int bl = tl + stride;
+        int br = bl + 1;
+        
+        int code = ((cells.get(tl)*NSTATES + cells.get(tr))*NSTATES
+                + cells.get(bl))*NSTATES + cells.get(br);
+        
+        int next = TRANSITIONS[code];
+        if (next < 0)
+            return 0;
+        
+        cells.set(tl, next & 0xF);
+        cells.set(tr, (next >> 4) & 0xF);
+        cells.set(bl, (next >> 8) & 0xF);
+        cells.set(br, (next >> 12) & 0xF);
+        
+        return next >>> 16;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2026 Terrarium contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package terrarium;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of durations with logarithmically sized buckets, in the style
+ * of HdrHistogram.  Each power of two range is split into SUB_BUCKETS
+ * equal buckets, so recorded values are resolved to within about 6%
+ * across the whole range of a long while using a fixed, small amount of
+ * memory.  Recording never allocates.
+ * 
+ * Not thread safe.
+ *
+ * @author Terrarium contributors
+ */
+public class LatencyHistogram {
+    
+    static final int SUB_BUCKET_BITS = 4;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    
+    /** Enough buckets for any non-negative long. */
+    static final int BUCKETS = (64 - SUB_BUCKET_BITS)*SUB_BUCKETS;
+    
+    final long[] counts = new long[BUCKETS];
+    long totalCount, sum, max;
+    
+    /**
+     * @param value non-negative value
+     * @return index of bucket holding value.
+     */
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS)
+            return (int)value;
+        
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BUCKET_BITS;
+        return (shift + 1)*SUB_BUCKETS + (int)((value >>> shift) & (SUB_BUCKETS-1));
+    }
+    
+    /**
+     * @param index
+     * @return smallest value falling in the bucket with the given index.
+     */
+    static long bucketStart(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+        
+        int shift = index/SUB_BUCKETS - 1;
+        return (long)(SUB_BUCKETS + index%SUB_BUCKETS) << shift;
+    }
+    
+    /**
+     * Record a single value.  Negative values are recorded as zero.
+     * 
+     * @param value 
+     */
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+        
+        counts[bucketIndex(value)] += 1;
+        totalCount += 1;
+        sum += value;
+        if (value > max)
+            max = value;
+    }
+    
+    public long getCount() {
+        return totalCount;
+    }
+    
+    public long getMax() {
+        return max;
+    }
+    
+    public double getMean() {
+        return totalCount > 0 ? sum/(double)totalCount : 0.0;
+    }
+    
+    /**
+     * @param percentile percentile in the range [0, 100]
+     * @return value below which the given percentage of recorded values
+     * fall, to within the resolution of the histogram.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0)
+            return 0;
+        
+        long target = Math.max(1, (long)Math.ceil(percentile/100.0*totalCount));
+        long seen = 0;
+        for (int i=0; i<BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= target)
+                return Math.min(bucketStart(i+1) - 1, max);
+        }
+        
+        return max;
+    }
+    
+    /**
+     * Discard all recorded values.
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        sum = 0;
+        max = 0;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2026 Terrarium contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package terrarium;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Cell grid packing two state ordinals into each byte.  Halves the memory
+ * footprint of ByteCellGrid at the cost of a shift and mask per access.
+ *
+ * @author Terrarium contributors
+ */
+public class NibbleCellGrid implements CellGrid {
+    
+    final byte[] packed;
+    final int size;
+    
+    public NibbleCellGrid(int size) {
+        this.size = size;
+        packed = new byte[(size+1)/2];
+    }
+    
+    private NibbleCellGrid(NibbleCellGrid other) {
+        size = other.size;
+        packed = other.packed.clone();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int get(int index) {
+        return (packed[index >> 1] >> ((index & 1) << 2)) & 0xF;
+    }
+
+    @Override
+    public void set(int index, int state) {
+        int shift = (index & 1) << 2;
+        int b = packed[index >> 1] & ~(0xF << shift);
+        packed[index >> 1] = (byte)(b | (state << shift));
+    }
+
+    @Override
+    public CellGrid copy() {
+        return new NibbleCellGrid(this);
+    }
+
+    @Override
+    public void copyFrom(int index, ByteBuffer src, int length) {
+        for (int k=0; k<length; k++)
+            set(index + k, src.get());
+    }
+
+    @Override
+    public void copyTo(int index, ByteBuffer dst, int length) {
+        for (int k=0; k<length; k++)
+            dst.put((byte)get(index + k));
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2026 Terrarium contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package terrarium;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * Panel of live performance figures drawn over a terrarium canvas.
+ * 
+ * The overlay is redrawn with every frame, so it formats its text into
+ * preallocated character buffers rather than building strings, and
+ * allocates nothing once it has been painted for the first time.
+ *
+ * @author Terrarium contributors
+ */
+public class PerformanceOverlay {
+    
+    static final int MARGIN = 4;
+    static final int LINE_LENGTH = 64;
+    
+    /** Width of the overlay in characters. */
+    static final int WIDTH_CHARS = 46;
+    
+    static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+    static final Color BACKGROUND = new Color(0, 0, 0, 160);
+    static final Color FOREGROUND = Color.WHITE;
+    
+    /** Fixed lines followed by one line per cell state. */
+    static final int FIXED_LINES = 4;
+    
+    final char[][] lines;
+    final int[] lineLengths;
+    
+    /** Scratch buffer used to format integers. */
+    final char[] digits = new char[20];
+    
+    final int[] population = new int[InorganicCA.STATES.length];
+    
+    /** Area covered by the overlay, known once it has been painted. */
+    final Rectangle bounds = new Rectangle();
+    
+    /**
+     * Pre-filled translucent background.  Blitting this allocates nothing,
+     * unlike filling a translucent rectangle directly.
+     */
+    BufferedImage backgroundImage;
+    
+    public PerformanceOverlay() {
+        lines = new char[FIXED_LINES + InorganicCA.STATES.length][LINE_LENGTH];
+        lineLengths = new int[lines.length];
+    }
+    
+    /**
+     * @return area of the canvas covered by the overlay.  Empty until the
+     * overlay has been painted.
+     */
+    public Rectangle getBounds() {
+        return bounds;
+    }
+    
+    /**
+     * Draw the overlay in the top-left corner of the canvas.
+     * 
+     * @param g
+     * @param simulation simulation driving the terrarium
+     * @param metrics metrics of the terrarium
+     */
+    public void paint(Graphics g, TerrariumSimulation simulation,
+            TerrariumMetrics metrics) {
+        
+        int line = 0;
+        
+        clear(line);
+        append(line, "Ticks/s  ");
+        append(line, simulation.getAchievedTickRate(), 1);
+        append(line, " of ");
+        append(line, simulation.getTickRate(), 0);
+        append(line, "  Frames/s ");
+        append(line, simulation.getAchievedFrameRate(), 1);
+        append(line, " of ");
+        append(line, simulation.getFrameRate(), 0);
+        line += 1;
+        
+        clear(line);
+        append(line, "Tick ms   p50 ");
+        append(line, metrics.getMedianTickMillis(), 2);
+        append(line, "  p99 ");
+        append(line, metrics.getTickMillis99(), 2);
+        append(line, "  max ");
+        append(line, metrics.getMaxTickMillis(), 2);
+        line += 1;
+        
+        clear(line);
+        append(line, "Render ms p50 ");
+        append(line, metrics.getMedianRenderMillis(), 2);
+        append(line, "  p99 ");
+        append(line, metrics.getRenderMillis99(), 2);
+        append(line, "  max ");
+        append(line, metrics.getMaxRenderMillis(), 2);
+        line += 1;
+        
+        Runtime runtime = Runtime.getRuntime();
+        clear(line);
+        append(line, "Heap MB   ");
+        append(line, (runtime.totalMemory() - runtime.freeMemory()) >> 20);
+        append(line, " of ");
+        append(line, runtime.maxMemory() >> 20);
+        line += 1;
+        
+        metrics.copyPopulationCounts(population);
+        for (int s=0; s<population.length; s++) {
+            clear(line);
+            append(line, InorganicCA.STATES[s].name());
+            while (lineLengths[line] < 10)
+                append(line, " ");
+            append(line, population[s]);
+            line += 1;
+        }
+        
+        g.setFont(FONT);
+        FontMetrics fm = g.getFontMetrics();
+        int lineHeight = fm.getHeight();
+        
+        // Fixed size, so that the box doesn't jitter as the figures change.
+        int width = WIDTH_CHARS*fm.charWidth('0') + 2*MARGIN;
+        int height = lines.length*lineHeight + 2*MARGIN;
+        if (backgroundImage == null || backgroundImage.getWidth() != width
+                || backgroundImage.getHeight() != height) {
+            backgroundImage = new BufferedImage(width, height,
+                    BufferedImage.TYPE_INT_ARGB);
+            Graphics bg = backgroundImage.getGraphics();
+            bg.setColor(BACKGROUND);
+            bg.fillRect(0, 0, width, height);
+            bg.dispose();
+            
+            bounds.setBounds(0, 0, width, height);
+        }
+        
+        g.drawImage(backgroundImage, bounds.x, bounds.y, null);
+        
+        g.setColor(FOREGROUND);
+        int y = MARGIN + fm.getAscent();
+        for (int l=0; l<lines.length; l++) {
+            g.drawChars(lines[l], 0, lineLengths[l], MARGIN, y);
+            y += lineHeight;
+        }
+    }
+    
+    private void clear(int line) {
+        lineLengths[line] = 0;
+    }
+    
+    private void append(int line, String text) {
+        int length = Math.min(text.length(), LINE_LENGTH - lineLengths[line]);
+        text.getChars(0, length, lines[line], lineLengths[line]);
+        lineLengths[line] += length;
+    }
+    
+    private void append(int line, char c) {
+        if (lineLengths[line] < LINE_LENGTH) {
+            lines[line][lineLengths[line]] = c;
+            lineLengths[line] += 1;
+        }
+    }
+    
+    private void append(int line, long value) {
+        if (value < 0) {
+            append(line, '-');
+            value = -value;
+        }
+        
+        int n = 0;
+        do {
+            digits[n++] = (char)('0' + value%10);
+            value /= 10;
+        } while (value > 0);
+        
+        while (n > 0)
+            append(line, digits[--n]);
+    }
+    
+    /**
+     * Append a value with a fixed number of decimal places.
+     */
+    private void append(int line, double value, int decimals) {
+        long scale = 1;
+        for (int d=0; d<decimals; d++)
+            scale *= 10;
+        
+        long scaled = Math.round(Math.abs(value)*scale);
+        if (value < 0 && scaled > 0)
+            append(line, '-');
+        
+        append(line, scaled/scale);
+        if (decimals > 0) {
+            append(line, '.');
+            long fraction = scaled%scale;
+            for (long place=scale/10; place>0; place /= 10)
+                append(line, (char)('0' + fraction/place%10));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2026 Terrarium contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package terrarium;
+
+import java.util.Random;
+
+/**
+ * Standard initial terrarium contents, used to set up headless runs and
+ * benchmarks.
+ *
+ * @author Terrarium contributors
+ */
+public enum Scene {
+    
+    /** Nothing but empty space. */
+    EMPTY,
+    
+    /** Every cell independently has an even chance of being dirt. */
+    HALF_DIRT,
+    
+    /** Bottom half filled with dirt, the gaps in which are full of water. */
+    WATERLOGGED,
+    
+    /**
+     * Square chambers sealed off from each other by walls, each cell
+     * within which is equally likely to be empty, steam, water or dirt.
+     */
+    CHAMBERS;
+    
+    /** Distance between the walls of the CHAMBERS scene. */
+    static final int CHAMBER_SIZE = 64;
+    
+    /**
+     * Fill the given CA with this scene.
+     * 
+     * @param ca
+     * @param seed seed for random placement of cells
+     */
+    public void apply(CellularEngine ca, long seed) {
+        Random random = new Random(seed);
+        
+        for (int i=0; i<ca.getHeight(); i++) {
+            for (int j=0; j<ca.getWidth(); j++) {
+                InorganicCA.CellState state;
+                switch(this) {
+                    case HALF_DIRT:
+                        state = random.nextBoolean()
+                                ? InorganicCA.CellState.DIRT
+                                : InorganicCA.CellState.EMPTY;
+                        break;
+                    case WATERLOGGED:
+                        if (i < ca.getHeight()/2)
+                            state = InorganicCA.CellState.EMPTY;
+                        else
+                            state = random.nextBoolean()
+                                    ? InorganicCA.CellState.DIRT
+                                    : InorganicCA.CellState.WATER;
+                        break;
+                    case CHAMBERS:
+                        if (i%CHAMBER_SIZE < 2 || j%CHAMBER_SIZE < 2)
+                            state = InorganicCA.CellState.WALL;
+                        else
+                            state = InorganicCA.STATES[random.nextInt(
+                                    InorganicCA.CellState.WALL.ordinal())];
+                        break;
+                    default:
+                        state = InorganicCA.CellState.EMPTY;
+                }
+                ca.setCellState(i, j, state);
+            }
+        }
+    }
+    
+    /**
+     * Look up a scene by name, ignoring case and allowing hyphens in
+     * place of underscores.
+     * 
+     * @param name
+     * @return scene
+     */
+    public static Scene parse(String name) {
+        try {
+            return valueOf(name.toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Unknown scene '" + name + "'.");
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2026 Terrarium contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package terrarium;
+
+/**
+ * Small, fast pseudo-random number generator (Steele, Lea and Flood's
+ * SplitMix64) whose entire state is a single long.  This makes it cheap
+ * to copy, save and restore, so that runs can be replayed exactly.
+ * 
+ * Not thread safe.
+ *
+ * @author Terrarium contributors
+ */
+public class SplitMixRandom {
+    
+    static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    
+    long state;
+    
+    public SplitMixRandom(long seed) {
+        state = seed;
+    }
+    
+    /**
+     * @return current state, from which setState() will resume the sequence.
+     */
+    public long getState() {
+        return state;
+    }
+    
+    public void setState(long state) {
+        this.state = state;
+    }
+    
+    public long nextLong() {
+        long z = (state += GOLDEN_GAMMA);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+    
+    public boolean nextBoolean() {
+        return nextLong() < 0;
+    }
+    
+    /**
+     * @param bound upper bound (exclusive), must be positive
+     * @return uniformly distributed integer in [0, bound).
+     */
+    public int nextInt(int bound) {
+        // Multiply-shift on the top 32 bits, with rejection of the few
+        // values which would bias the result.
+        long m = (nextLong() >>> 32) * bound;
+        if ((m & 0xFFFFFFFFL) < bound) {
+            long threshold = (1L << 32) % bound;
+            while ((m & 0xFFFFFFFFL) < threshold)
+                m = (nextLong() >>> 32) * bound;
+        }
+        return (int)(m >>> 32);
+    }
+}
@@ -17,10 +17,20 @@
 
 package terrarium;
 
+import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * Class of objects representing terrarium simulations.
@@ -31,15 +41,66 @@ public class Terrarium {
     
     int width, height;
 
-    InorganicCA inorganicCA;
+    CellularEngine engine;
     
-    BufferedImage image;
     Image backgroundImage;
     
+    /**
+     * Largest number of pixels in a frame.  Frames of larger terrariums
+     * sample every step-th cell of every step-th row, as no display could
+     * show more of them while the whole terrarium is in view.  This keeps
+     * the frame buffers of huge sparse worlds from outgrowing their grids.
+     */
+    static final int MAX_FRAME_PIXELS = 1 << 22;
+    
+    /** Distance in cells between the cells sampled by adjacent pixels. */
+    final int step;
+    
+    /** Frame size in pixels. */
+    final int frameWidth, frameHeight;
+    
+    /**
+     * Frame buffers.  The front buffer holds the most recently completed
+     * frame and is only touched while holding frameLock.  The back buffer
+     * belongs to whichever thread calls updateImage().
+     */
+    FrameBuffer front, back;
+    final Object frameLock = new Object();
+    
+    /**
+     * States of a row of cells, read from the engine while rasterising.
+     * Belongs, like the back buffer, to the thread calling updateImage().
+     */
+    ByteBuffer rowStates;
+    
+    /**
+     * Region of the front buffer, in terrarium coordinates, which has
+     * changed since it was last composited for display.  Guarded by
+     * frameLock.
+     */
+    Rectangle damage;
+    
+    /**
+     * Display-side caches, touched only by the thread calling render().
+     * The background is scaled once per output size and the composite holds
+     * the background with the cell layer drawn over it, so that repaints
+     * which follow no new frame are a single unscaled blit.
+     */
+    BufferedImage scaledBackground, composite;
+    Image compositeSource;
+    GraphicsConfiguration compositeConfig;
+    
     Color emptyCol = new Color(0, 0, 0, 0);
+    Color steamCol = new Color(230, 230, 240, 160);
     Color dirtCol = new Color(139, 69, 19, 255);
     //Color dirtCol = new Color(255,255,255, 255);
     Color waterCol = new Color(0, 100, 255, 255);
+    Color wallCol = new Color(90, 90, 90, 255);
+    
+    /** ARGB colour for each cell state, indexed by state ordinal. */
+    int[] palette;
+    
+    final TerrariumMetrics metrics = new TerrariumMetrics();
     
     /**
      * Create a new terrarium simulation.
@@ -48,12 +109,116 @@ public class Terrarium {
      * @param height 
      */
     public Terrarium(int width, int height) {
-        this.width = width;
-        this.height = height;
+        this(width, height, EngineType.TABLE);
+    }
+    
+    /**
+     * Create a new terrarium simulation using the chosen engine.
+     * 
+     * @param width
+     * @param height
+     * @param engine 
+     */
+    public Terrarium(int width, int height, EngineType engine) {
+        this(engine.create(width, height, CellStorage.BYTE));
+    }
+    
+    /**
+     * Create a new terrarium simulation around an existing engine.
+     * 
+     * @param engine 
+     */
+    public Terrarium(CellularEngine engine) {
+        this.width = engine.getWidth();
+        this.height = engine.getHeight();
+        this.engine = engine;
         
-        inorganicCA = new InorganicCA(width, height);
+        step = frameStep(width, height);
+        frameWidth = (width + step - 1)/step;
+        frameHeight = (height + step - 1)/step;
         
-        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        updatePalette();
+    }
+    
+    /**
+     * @param width terrarium width in cells
+     * @param height terrarium height in cells
+     * @return smallest sampling step which keeps frames of a terrarium of
+     * the given size within MAX_FRAME_PIXELS.
+     */
+    static int frameStep(int width, int height) {
+        int step = 1;
+        while ((long)((width + step - 1)/step)*((height + step - 1)/step)
+                > MAX_FRAME_PIXELS)
+            step += 1;
+        return step;
+    }
+    
+    /**
+     * @param width terrarium width in cells
+     * @param height terrarium height in cells
+     * @return bytes of heap taken by the two frame buffers used to display
+     * a terrarium of the given size.
+     */
+    public static long getFrameBytes(int width, int height) {
+        int step = frameStep(width, height);
+        return 2L*4*((width + step - 1)/step)*((height + step - 1)/step);
+    }
+    
+    /**
+     * Load a terrarium saved to disk, in either the binary or the JSON
+     * format.
+     * 
+     * @param file
+     * @return loaded terrarium
+     * @throws IOException if the file cannot be read or is invalid.
+     */
+    public static Terrarium load(File file) throws IOException {
+        return load(file, EngineType.TABLE, CellStorage.BYTE);
+    }
+    
+    /**
+     * Load a terrarium saved to disk, updating it with the chosen engine
+     * and storing its cells in the chosen way.
+     * 
+     * @param file
+     * @param engine
+     * @param storage
+     * @return loaded terrarium
+     * @throws IOException if the file cannot be read or is invalid.
+     */
+    public static Terrarium load(File file, EngineType engine,
+            CellStorage storage) throws IOException {
+        return new Terrarium(engine.adopt(TerrariumFile.read(file, storage)));
+    }
+    
+    /**
+     * Rebuild the state colour palette from the individual state colours.
+     * Must be called after any of the colours are changed.
+     */
+    public final void updatePalette() {
+        engine.markAllDirty();
+
+        palette = new int[InorganicCA.STATES.length];
+        palette[InorganicCA.CellState.EMPTY.ordinal()] = emptyCol.getRGB();
+        palette[InorganicCA.CellState.STEAM.ordinal()] = steamCol.getRGB();
+        palette[InorganicCA.CellState.WATER.ordinal()] = waterCol.getRGB();
+        palette[InorganicCA.CellState.DIRT.ordinal()] = dirtCol.getRGB();
+        palette[InorganicCA.CellState.WALL.ordinal()] = wallCol.getRGB();
+    }
+    
+    /**
+     * @return per-tick performance metrics of this terrarium.
+     */
+    public TerrariumMetrics getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * @return the engine updating the inorganic part of the simulation.
+     */
+    public CellularEngine getEngine() {
+        return engine;
     }
     
     /**
@@ -81,9 +246,14 @@ public class Terrarium {
     }
 
     /**
-     * Render the current state of the terrarium to the chosen graphics object.
-     * The image is rendered to the rectangle between (0,0) and (outputWidth,
-     * outputHeight).
+     * Render the most recently completed frame of the terrarium to the
+     * chosen graphics object.  The image is rendered to the rectangle between
+     * (0,0) and (outputWidth, outputHeight).  Frames are produced by
+     * updateImage().
+     * 
+     * The scaled background and the scaled frame are cached in an image
+     * compatible with the destination, and only the parts of it covered by
+     * frames produced since the last call are redrawn.
      * 
      * @param g
      * @param outputWidth
@@ -91,36 +261,255 @@ public class Terrarium {
      */
     public void render(Graphics g, int outputWidth, int outputHeight) {
         
-        // Render inorganic
-        for (int i=0; i<height; i++) {
-            for (int j=0; j<width; j++) {
-                int rgbCol;
-                switch(inorganicCA.getCellState(i, j)) {
-                    case DIRT:
-                        rgbCol = dirtCol.getRGB();
-                        break;
-                    case WATER:
-                        rgbCol = waterCol.getRGB();
-                        break;
-                    case EMPTY:
-                        rgbCol = emptyCol.getRGB();
-                        break;
-                    default:
-                        rgbCol = 0;
+        if (outputWidth <= 0 || outputHeight <= 0)
+            return;
+        
+        GraphicsConfiguration gc = g instanceof Graphics2D
+                ? ((Graphics2D)g).getDeviceConfiguration()
+                : null;
+        
+        if (gc == null) {
+            g.drawImage(backgroundImage, 0, 0, outputWidth, outputHeight, null);
+            synchronized (frameLock) {
+                if (front != null)
+                    g.drawImage(front.image, 0, 0, outputWidth, outputHeight, null);
+            }
+            return;
+        }
+        
+        boolean rebuild = composite == null
+                || composite.getWidth() != outputWidth
+                || composite.getHeight() != outputHeight
+                || compositeConfig != gc
+                || compositeSource != backgroundImage;
+        
+        if (rebuild) {
+            compositeConfig = gc;
+            compositeSource = backgroundImage;
+            composite = gc.createCompatibleImage(outputWidth, outputHeight,
+                    Transparency.TRANSLUCENT);
+            scaledBackground = gc.createCompatibleImage(outputWidth, outputHeight,
+                    Transparency.TRANSLUCENT);
+            
+            Graphics2D bg = scaledBackground.createGraphics();
+            bg.drawImage(backgroundImage, 0, 0, outputWidth, outputHeight, null);
+            bg.dispose();
+        }
+        
+        synchronized (frameLock) {
+            Rectangle region = null;
+            if (rebuild)
+                region = new Rectangle(0, 0, outputWidth, outputHeight);
+            else if (damage != null)
+                region = scaleRegion(damage, outputWidth, outputHeight);
+            damage = null;
+            
+            if (region != null)
+                recomposite(region, outputWidth, outputHeight);
+        }
+        
+        g.drawImage(composite, 0, 0, null);
+    }
+    
+    /**
+     * Redraw the given region of the composite image from the scaled
+     * background and the front buffer.  Must be called while holding
+     * frameLock.
+     * 
+     * @param region region in output coordinates
+     * @param outputWidth
+     * @param outputHeight 
+     */
+    private void recomposite(Rectangle region, int outputWidth, int outputHeight) {
+        Graphics2D cg = composite.createGraphics();
+        cg.setClip(region);
+        
+        cg.setComposite(AlphaComposite.Src);
+        cg.drawImage(scaledBackground, 0, 0, null);
+        
+        if (front != null) {
+            cg.setComposite(AlphaComposite.SrcOver);
+            cg.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                    RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+            cg.drawImage(front.image, 0, 0, outputWidth, outputHeight, null);
+        }
+        
+        cg.dispose();
+    }
+    
+    /**
+     * Map a region in terrarium coordinates to the output rectangle it is
+     * drawn onto, padded by a pixel to cover rounding at its edges.
+     * 
+     * @param region region in terrarium coordinates
+     * @param outputWidth
+     * @param outputHeight
+     * @return region in output coordinates
+     */
+    private Rectangle scaleRegion(Rectangle region, int outputWidth, int outputHeight) {
+        double sx = outputWidth/(double)width;
+        double sy = outputHeight/(double)height;
+        
+        int x0 = Math.max((int)Math.floor(region.x*sx) - 1, 0);
+        int y0 = Math.max((int)Math.floor(region.y*sy) - 1, 0);
+        int x1 = Math.min((int)Math.ceil((region.x + region.width)*sx) + 1, outputWidth);
+        int y1 = Math.min((int)Math.ceil((region.y + region.height)*sy) + 1, outputHeight);
+        
+        return new Rectangle(x0, y0, x1 - x0, y1 - y0);
+    }
+
+    /**
+     * Produce a new frame by re-rasterising those parts of the back buffer
+     * which are out of date, then swapping it with the front buffer.
+     * Must not be called concurrently with changes to the CA.
+     * 
+     * @return bounding box of the region which differs from the previous
+     * frame in terrarium coordinates, or null if nothing has changed (in
+     * which case the buffers are not swapped).
+     */
+    public Rectangle updateImage() {
+        long start = System.nanoTime();
+        Rectangle changed = rasterise();
+        metrics.renderCompleted(System.nanoTime() - start);
+        
+        return changed;
+    }
+    
+    /**
+     * Body of updateImage().
+     * 
+     * @return changed region, or null.
+     */
+    private Rectangle rasterise() {
+        
+        // Buffers are created on first use so that headless runs never
+        // allocate them.
+        if (back == null) {
+            int nTiles = engine.getTileRows()*engine.getTileCols();
+            back = new FrameBuffer(frameWidth, frameHeight, nTiles);
+            synchronized (frameLock) {
+                front = new FrameBuffer(frameWidth, frameHeight, nTiles);
+            }
+            rowStates = ByteBuffer.allocate(width);
+            engine.markAllDirty();
+        }
+        
+        int tileSize = engine.getTileSize();
+        int tileRows = engine.getTileRows();
+        int tileCols = engine.getTileCols();
+        int[] pal = palette;
+        int[] pixels = back.pixels;
+        ByteBuffer rowBuffer = rowStates;
+        byte[] row = rowBuffer.array();
+        
+        int minRow = Integer.MAX_VALUE, maxRow = -1;
+        int minCol = Integer.MAX_VALUE, maxCol = -1;
+        
+        for (int tr=0; tr<tileRows; tr++) {
+            
+            // Find the tiles of this row needing rasterising, along with
+            // the span of columns covering them.
+            int firstStale = tileCols, lastStale = -1;
+            for (int tc=0; tc<tileCols; tc++) {
+                int t = tr*tileCols + tc;
+                
+                // Tiles changed since the last frame are stale in both
+                // buffers, as the front buffer is next in line for
+                // updating.
+                if (engine.clearTileDirty(tr, tc)) {
+                    back.stale[t] = true;
+                    front.stale[t] = true;
+                    
+                    minRow = Math.min(minRow, tr);
+                    maxRow = Math.max(maxRow, tr);
+                    minCol = Math.min(minCol, tc);
+                    maxCol = Math.max(maxCol, tc);
+                }
+                
+                if (back.stale[t]) {
+                    firstStale = Math.min(firstStale, tc);
+                    lastStale = tc;
+                }
+            }
+            
+            if (lastStale < 0)
+                continue;
+            
+            // Each sampled row of cells is read once across the whole span,
+            // then only the stale tiles within it are drawn.
+            int spanStart = firstStale*tileSize;
+            int spanEnd = Math.min((lastStale+1)*tileSize, width);
+            int iEnd = Math.min((tr+1)*tileSize, height);
+            for (int i=roundUp(tr*tileSize); i<iEnd; i += step) {
+                rowBuffer.clear();
+                engine.copyRow(i, spanStart, rowBuffer, spanEnd - spanStart);
+                int pixelRowStart = (i/step)*frameWidth;
+                
+                for (int tc=firstStale; tc<=lastStale; tc++) {
+                    if (!back.stale[tr*tileCols + tc])
+                        continue;
+                    
+                    int jEnd = Math.min((tc+1)*tileSize, spanEnd);
+                    for (int j=roundUp(tc*tileSize); j<jEnd; j += step)
+                        pixels[pixelRowStart + j/step] = pal[row[j - spanStart]];
                 }
-                image.setRGB(j, i, rgbCol);
             }
+            
+            for (int tc=firstStale; tc<=lastStale; tc++)
+                back.stale[tr*tileCols + tc] = false;
         }
         
-        g.drawImage(backgroundImage,0, 0, outputWidth, outputHeight, null);
-        g.drawImage(image, 0, 0, outputWidth, outputHeight, null);
+        if (maxRow < 0)
+            return null;
+        
+        int x = minCol*tileSize;
+        int y = minRow*tileSize;
+        Rectangle changed = new Rectangle(x, y,
+                Math.min((maxCol+1)*tileSize, width) - x,
+                Math.min((maxRow+1)*tileSize, height) - y);
+        
+        synchronized (frameLock) {
+            FrameBuffer tmp = front;
+            front = back;
+            back = tmp;
+            
+            damage = damage == null ? new Rectangle(changed) : damage.union(changed);
+        }
+        
+        return changed;
+    }
+    
+    /**
+     * @param n
+     * @return smallest multiple of the sampling step not less than n.
+     */
+    private int roundUp(int n) {
+        return (n + step - 1)/step*step;
+    }
+    
+    /**
+     * Image holding one frame, along with flags marking which of its
+     * tiles are out of date.
+     */
+    static class FrameBuffer {
+        final BufferedImage image;
+        final int[] pixels;
+        final boolean[] stale;
+
+        FrameBuffer(int width, int height, int nTiles) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+            stale = new boolean[nTiles];
+        }
     }
 
     /**
      * Step terrarium state forward by one time unit.
      */
     public void tick() {
-        inorganicCA.updateStates();
+        long start = System.nanoTime();
+        engine.updateStates();
+        metrics.tickCompleted(engine, System.nanoTime() - start);
     }
     
     /**
@@ -156,21 +545,20 @@ public class Terrarium {
      * @param radius
      */
     private void addState(InorganicCA.CellState state, int x, int y, int radius) {
-        
-        for (int i=y-radius; i<y+radius; i++) {
-            if (i<0 || i>=height)
-                continue;
-            
-            for (int j=x-radius; j<x+radius; j++) {
-                if (j<=0 || j>=width)
-                    continue;
-                
-                if ((i-y)*(i-y) + (j-x)*(j-x) < radius*radius) {
-                    if (inorganicCA.getCellState(i, j).isEmptyFor(state))
-                        inorganicCA.setCellState(i, j, state);
-                }
-            }
-        }
+        BrushStroke stroke = new BrushStroke(state, radius, width, height);
+        stroke.addPoint(x, y);
+        paint(stroke);
+    }
+    
+    /**
+     * Paint a brush stroke onto the terrarium.  Note that only cells with
+     * states which are empty for the stroke's state are updated.
+     * 
+     * @param stroke
+     * @return number of cells changed
+     */
+    public int paint(BrushStroke stroke) {
+        return stroke.apply(engine);
     }
     
     /**
@@ -182,7 +570,7 @@ public class Terrarium {
     public String serialize() {
         StringBuilder sb = new StringBuilder();
         sb.append("{");
-        sb.append("\"inorganic\": ").append(inorganicCA.serialize());
+        sb.append("\"inorganic\": ").append(engine.serialize());
         sb.append("}");
         
         return sb.toString();
@@ -16,23 +16,39 @@
  */
 package terrarium;
 
+import java.awt.BorderLayout;
 import java.awt.HeadlessException;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import javax.imageio.ImageIO;
+import javax.management.JMException;
+import javax.swing.BorderFactory;
+import javax.swing.Box;
+import javax.swing.BoxLayout;
+import javax.swing.ButtonGroup;
+import javax.swing.JCheckBox;
+import javax.swing.JCheckBoxMenuItem;
+import javax.swing.JComboBox;
+import javax.swing.JComponent;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
+import javax.swing.JLabel;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JRadioButtonMenuItem;
 import javax.swing.KeyStroke;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
 import javax.swing.UIManager;
 import javax.swing.UIManager.LookAndFeelInfo;
 import javax.swing.UnsupportedLookAndFeelException;
@@ -47,11 +63,36 @@ import javax.swing.filechooser.FileNameExtensionFilter;
 public class TerrariumApp extends JFrame {
 
     JMenuBar menuBar;
-    JMenu fileMenu;
-    JMenuItem fileNewMenuItem, fileSaveMenuItem, fileExitMenuItem;
+    JMenu fileMenu, viewMenu, brushMenu;
+    JMenuItem fileNewMenuItem, fileOpenMenuItem, fileSaveMenuItem,
+            fileExportMenuItem, fileAutosaveMenuItem, fileExitMenuItem;
+    JCheckBoxMenuItem viewOverlayMenuItem;
+    
+    /** Default autosave interval in seconds and number of files kept. */
+    static final double AUTOSAVE_INTERVAL = 60;
+    static final int AUTOSAVE_KEEP = 3;
+    
+    /** Materials and radii offered in the brush menu. */
+    static final InorganicCA.CellState[] BRUSH_MATERIALS = {
+        InorganicCA.CellState.DIRT, InorganicCA.CellState.WATER,
+        InorganicCA.CellState.STEAM, InorganicCA.CellState.WALL
+    };
+    static final int[] BRUSH_RADII = {2, 5, 10, 20, 40, 80};
+    static final int DEFAULT_BRUSH_RADIUS = 20;
     
     TerrariumCanvas canvas;
     Terrarium terrarium;
+    
+    /** Engine and storage most recently chosen for opening files. */
+    EngineType openEngine = EngineType.TABLE;
+    CellStorage openStorage = CellStorage.BYTE;
+    
+    /** Format most recently chosen for saving files. */
+    TerrariumFile.Encoding saveEncoding = TerrariumFile.Encoding.RLE;
+    boolean saveCompress = true;
+    
+    JLabel statusLabel;
+    Timer statusTimer;
 
     public TerrariumApp() throws HeadlessException {
         createMenuBar();
@@ -59,8 +100,39 @@ public class TerrariumApp extends JFrame {
         canvas = new TerrariumCanvas();
         getContentPane().add(canvas);
         
+        statusLabel = new JLabel(" ");
+        statusLabel.setBorder(BorderFactory.createEmptyBorder(2, 4, 2, 4));
+        getContentPane().add(statusLabel, BorderLayout.SOUTH);
+        
+        statusTimer = new Timer(1000, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                updateStatus();
+            }
+        });
+        statusTimer.start();
+        
         setSize(640, 480);
     }
+    
+    /**
+     * Report achieved versus target simulation rates in the status bar.
+     */
+    void updateStatus() {
+        TerrariumSimulation simulation = canvas.getSimulation();
+        if (simulation == null || !simulation.isRunning())
+            return;
+        
+        TerrariumMetrics metrics = terrarium.getMetrics();
+        statusLabel.setText(String.format(
+                "Ticks/s: %.1f of %.0f   Frames/s: %.1f of %.0f   Dropped ticks: %d"
+                + "   Tick: %.2f ms   Render: %.2f ms   Swaps: %d",
+                simulation.getAchievedTickRate(), simulation.getTickRate(),
+                simulation.getAchievedFrameRate(), simulation.getFrameRate(),
+                simulation.getDroppedTicks(),
+                metrics.getMedianTickMillis(), metrics.getMedianRenderMillis(),
+                metrics.getLastSwapCount()));
+    }
 
     final void createMenuBar() {
         menuBar = new JMenuBar();
@@ -80,6 +152,17 @@ public class TerrariumApp extends JFrame {
         });
         fileMenu.add(fileNewMenuItem);
         
+        fileOpenMenuItem = new JMenuItem("Open terrarium...", KeyEvent.VK_O);
+        fileOpenMenuItem.setAccelerator(KeyStroke.getKeyStroke(
+                KeyEvent.VK_O, ActionEvent.CTRL_MASK));
+        fileOpenMenuItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                fileOpenAction();
+            }
+        });
+        fileMenu.add(fileOpenMenuItem);
+        
         fileSaveMenuItem = new JMenuItem("Save terrarium", KeyEvent.VK_S);
         fileSaveMenuItem.setAccelerator(KeyStroke.getKeyStroke(
                 KeyEvent.VK_S, ActionEvent.CTRL_MASK));
@@ -91,6 +174,26 @@ public class TerrariumApp extends JFrame {
         });
         fileSaveMenuItem.setEnabled(false);
         fileMenu.add(fileSaveMenuItem);
+        
+        fileExportMenuItem = new JMenuItem("Export as JSON...", KeyEvent.VK_E);
+        fileExportMenuItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                fileExportAction();
+            }
+        });
+        fileExportMenuItem.setEnabled(false);
+        fileMenu.add(fileExportMenuItem);
+        
+        fileAutosaveMenuItem = new JMenuItem("Autosave...", KeyEvent.VK_A);
+        fileAutosaveMenuItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                fileAutosaveAction();
+            }
+        });
+        fileAutosaveMenuItem.setEnabled(false);
+        fileMenu.add(fileAutosaveMenuItem);
 
         fileMenu.addSeparator();
         
@@ -104,39 +207,216 @@ public class TerrariumApp extends JFrame {
             }
         });
         fileMenu.add(fileExitMenuItem);
+        
+        viewMenu = new JMenu("View");
+        viewMenu.setMnemonic(KeyEvent.VK_V);
+        menuBar.add(viewMenu);
+        
+        viewOverlayMenuItem = new JCheckBoxMenuItem("Performance overlay");
+        viewOverlayMenuItem.setMnemonic(KeyEvent.VK_P);
+        viewOverlayMenuItem.setAccelerator(KeyStroke.getKeyStroke(
+                KeyEvent.VK_F3, 0));
+        viewOverlayMenuItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                canvas.setOverlayVisible(viewOverlayMenuItem.isSelected());
+            }
+        });
+        viewMenu.add(viewOverlayMenuItem);
+        
+        brushMenu = new JMenu("Brush");
+        brushMenu.setMnemonic(KeyEvent.VK_B);
+        menuBar.add(brushMenu);
+        
+        brushMenu.add(createMaterialMenu("Left button", true));
+        brushMenu.add(createMaterialMenu("Right button", false));
+        
+        JMenu sizeMenu = new JMenu("Radius");
+        ButtonGroup sizeGroup = new ButtonGroup();
+        for (final int radius : BRUSH_RADII) {
+            JRadioButtonMenuItem item = new JRadioButtonMenuItem(
+                    radius + " cells", radius == DEFAULT_BRUSH_RADIUS);
+            item.addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    canvas.setBrushRadius(radius);
+                }
+            });
+            sizeGroup.add(item);
+            sizeMenu.add(item);
+        }
+        brushMenu.add(sizeMenu);
 
         setJMenuBar(menuBar);
     }
+    
+    /**
+     * Create a menu for choosing the material painted by one of the mouse
+     * buttons.
+     * 
+     * @param title menu title
+     * @param primary true for the left button, false for the right
+     * @return menu
+     */
+    JMenu createMaterialMenu(String title, final boolean primary) {
+        JMenu menu = new JMenu(title);
+        ButtonGroup group = new ButtonGroup();
+        
+        InorganicCA.CellState selected = primary
+                ? InorganicCA.CellState.DIRT
+                : InorganicCA.CellState.WATER;
+        
+        for (final InorganicCA.CellState material : BRUSH_MATERIALS) {
+            String name = material.name().charAt(0)
+                    + material.name().substring(1).toLowerCase();
+            JRadioButtonMenuItem item = new JRadioButtonMenuItem(name,
+                    material == selected);
+            item.addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    if (primary)
+                        canvas.setBrushMaterials(material,
+                                canvas.getSecondaryMaterial());
+                    else
+                        canvas.setBrushMaterials(canvas.getPrimaryMaterial(),
+                                material);
+                }
+            });
+            group.add(item);
+            menu.add(item);
+        }
+        
+        return menu;
+    }
 
     /**
      * Bring up terrarium creation wizard.
      */
     void fileNewAction() {
 
-        if (terrarium != null) {
-            int res = JOptionPane.showConfirmDialog(this,
-                    "This will discard existing terrarium.  Are you sure?",
-                    "Warning", JOptionPane.WARNING_MESSAGE);
-            
-            if (res != JOptionPane.YES_OPTION)
-                return;
-        }
+        if (!confirmDiscard())
+            return;
         
         TerrariumWizard wizard = new TerrariumWizard(this);
         wizard.setVisible(true);
-        if (wizard.getTerrarium() != null) {
-            terrarium = wizard.getTerrarium();
-            canvas.setTerrarium(terrarium);
-            canvas.start();
-            fileSaveMenuItem.setEnabled(true);
+        if (wizard.getTerrarium() != null)
+            showTerrarium(wizard.getTerrarium());
+    }
+    
+    /**
+     * Load a terrarium previously saved to disk.
+     */
+    void fileOpenAction() {
+        
+        if (!confirmDiscard())
+            return;
+        
+        JFileChooser fc = new JFileChooser();
+        fc.setFileFilter(new FileNameExtensionFilter(
+                "Terrarium files (*.terrarium, *.json)", "terrarium", "json"));
+        
+        // The engine and storage are chosen afresh on loading, so that
+        // they can be compared on the same saved terrarium.
+        JPanel optionsPanel = new JPanel();
+        optionsPanel.setLayout(new BoxLayout(optionsPanel, BoxLayout.Y_AXIS));
+        
+        JComboBox<EngineType> engineComboBox = new JComboBox<>(EngineType.values());
+        engineComboBox.setSelectedItem(openEngine);
+        engineComboBox.setBorder(BorderFactory.createTitledBorder("Engine"));
+        optionsPanel.add(engineComboBox);
+        
+        JComboBox<CellStorage> storageComboBox = new JComboBox<>(CellStorage.values());
+        storageComboBox.setSelectedItem(openStorage);
+        storageComboBox.setBorder(BorderFactory.createTitledBorder("Cell storage"));
+        optionsPanel.add(storageComboBox);
+        
+        optionsPanel.add(Box.createVerticalGlue());
+        fc.setAccessory(optionsPanel);
+        
+        if (fc.showOpenDialog(this) != JFileChooser.APPROVE_OPTION)
+            return;
+        
+        final File file = fc.getSelectedFile();
+        openEngine = (EngineType)engineComboBox.getSelectedItem();
+        openStorage = (CellStorage)storageComboBox.getSelectedItem();
+        
+        // Decoding a large or compressed file can take a while, so do it
+        // in the background and only display the result once it is ready.
+        final EngineType engine = openEngine;
+        final CellStorage storage = openStorage;
+        new SwingWorker<Terrarium, Void>() {
+            @Override
+            protected Terrarium doInBackground() throws IOException {
+                return Terrarium.load(file, engine, storage);
+            }
+            
+            @Override
+            protected void done() {
+                Terrarium loaded;
+                try {
+                    loaded = get();
+                } catch (InterruptedException | ExecutionException ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    JOptionPane.showMessageDialog(TerrariumApp.this,
+                            "Error loading file " + file.getName() + ": "
+                            + cause.getMessage(),
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                
+                loaded.setBackgroundColour(TerrariumWizard.DEFAULT_BACKGROUND);
+                showTerrarium(loaded);
+            }
+        }.execute();
+    }
+    
+    /**
+     * Ask the user whether the existing terrarium may be discarded.
+     * 
+     * @return true if there is no existing terrarium or the user agreed.
+     */
+    boolean confirmDiscard() {
+        if (terrarium == null)
+            return true;
+        
+        int res = JOptionPane.showConfirmDialog(this,
+                "This will discard existing terrarium.  Are you sure?",
+                "Warning", JOptionPane.WARNING_MESSAGE);
+        
+        return res == JOptionPane.YES_OPTION;
+    }
+    
+    /**
+     * Display and start simulating a new terrarium.
+     * 
+     * @param newTerrarium 
+     */
+    void showTerrarium(Terrarium newTerrarium) {
+        terrarium = newTerrarium;
+        try {
+            terrarium.getMetrics().register();
+        } catch (JMException ex) {
+            System.err.println("Cannot publish metrics over JMX: "
+                    + ex.getMessage());
         }
+        canvas.setTerrarium(terrarium);
+        canvas.start();
+        fileSaveMenuItem.setEnabled(true);
+        fileExportMenuItem.setEnabled(true);
+        fileAutosaveMenuItem.setEnabled(true);
     }
     
     /**
-     * Handle saving displayed terrarium state to disk.
+     * Ask the user for a file to save to, confirming any overwrite.
+     * 
+     * @param extension file name extension, including the leading dot
+     * @param description description of the file type
+     * @return chosen file, or null if the user cancelled.
      */
-    void fileSaveAction() {
+    File chooseSaveFile(final String extension, final String description,
+            JComponent accessory) {
         JFileChooser fc = new JFileChooser();
+        fc.setAccessory(accessory);
   
         fc.setFileFilter(new FileFilter() {
 
@@ -145,36 +425,173 @@ public class TerrariumApp extends JFrame {
                 if (f.isDirectory())
                     return true;
                 
-                return f.getName().endsWith(".terrarium");
+                return f.getName().endsWith(extension);
             }
 
             @Override
             public String getDescription() {
-                return "Terrarium files (*.terrarium)";
+                return description;
             }
         });
         
-        fc.setSelectedFile(new File("saved.terrarium"));
+        fc.setSelectedFile(new File("saved" + extension));
         
-        if (fc.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
-            File file = fc.getSelectedFile();
-
-            if (file.exists()) {
-                int res = JOptionPane.showConfirmDialog(this,
-                        "File " + file.getName() + " already exists. Overwrite?");
-                if (res != JOptionPane.YES_OPTION)
-                    return;
+        if (fc.showSaveDialog(this) != JFileChooser.APPROVE_OPTION)
+            return null;
+        
+        File file = fc.getSelectedFile();
+        
+        if (file.exists()) {
+            int res = JOptionPane.showConfirmDialog(this,
+                    "File " + file.getName() + " already exists. Overwrite?");
+            if (res != JOptionPane.YES_OPTION)
+                return null;
+        }
+        
+        return file;
+    }
+    
+    /**
+     * Handle saving displayed terrarium state to disk.
+     */
+    void fileSaveAction() {
+        JPanel formatPanel = new JPanel();
+        formatPanel.setLayout(new BoxLayout(formatPanel, BoxLayout.Y_AXIS));
+        formatPanel.setBorder(BorderFactory.createTitledBorder("Format"));
+        
+        // Uncompressed raw files are larger, but are loaded by mapping
+        // them straight into memory.
+        JComboBox<TerrariumFile.Encoding> encodingComboBox =
+                new JComboBox<>(TerrariumFile.Encoding.values());
+        encodingComboBox.setSelectedItem(saveEncoding);
+        formatPanel.add(encodingComboBox);
+        
+        JCheckBox compressCheckBox = new JCheckBox("Compress", saveCompress);
+        formatPanel.add(compressCheckBox);
+        formatPanel.add(Box.createVerticalGlue());
+        
+        final File file = chooseSaveFile(".terrarium",
+                "Terrarium files (*.terrarium)", formatPanel);
+        if (file == null)
+            return;
+        
+        saveEncoding = (TerrariumFile.Encoding)encodingComboBox.getSelectedItem();
+        saveCompress = compressCheckBox.isSelected();
+        final TerrariumFile.Encoding encoding = saveEncoding;
+        final boolean compress = saveCompress;
+        
+        // Copy the grid between ticks so that the saved state is
+        // consistent, then encode and write the copy.  All of this happens
+        // in the background, so that the display never waits for the
+        // simulation thread and the simulation never waits for the disk.
+        final TerrariumSimulation simulation = canvas.getSimulation();
+        final Terrarium saved = terrarium;
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                CellularEngine snapshot = simulation.call(new Callable<CellularEngine>() {
+                    @Override
+                    public CellularEngine call() {
+                        return saved.getEngine().snapshot();
+                    }
+                });
+                TerrariumFile.write(snapshot, file, encoding, compress);
+                return null;
             }
             
-            try (PrintStream pstream = new PrintStream(file)) {
-                    pstream.println(terrarium.serialize());
-
-            } catch (FileNotFoundException ex) {
-                JOptionPane.showMessageDialog(this,
-                        "Error writing to file " + file.getName() + ". Aborting.",
-                        "Error", JOptionPane.ERROR_MESSAGE);
+            @Override
+            protected void done() {
+                try {
+                    get();
+                } catch (InterruptedException | ExecutionException ex) {
+                    String message = ex.getCause() instanceof IOException
+                            ? "Error writing to file " + file.getName() + "."
+                            : "Error copying terrarium. Aborting.";
+                    JOptionPane.showMessageDialog(TerrariumApp.this,
+                            message, "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+    
+    /**
+     * Handle exporting displayed terrarium state to disk as JSON.
+     */
+    void fileExportAction() {
+        final File file = chooseSaveFile(".json", "JSON files (*.json)", null);
+        if (file == null)
+            return;
+        
+        // Serialize between ticks so that the saved state is consistent,
+        // waiting for the simulation thread in the background.
+        final TerrariumSimulation simulation = canvas.getSimulation();
+        final Terrarium saved = terrarium;
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                String state = simulation.call(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return saved.serialize();
+                    }
+                });
+                
+                try (PrintStream pstream = new PrintStream(file)) {
+                    pstream.println(state);
+                }
+                return null;
             }
+            
+            @Override
+            protected void done() {
+                try {
+                    get();
+                } catch (InterruptedException | ExecutionException ex) {
+                    String message = ex.getCause() instanceof IOException
+                            ? "Error writing to file " + file.getName() + ". Aborting."
+                            : "Error serializing terrarium. Aborting.";
+                    JOptionPane.showMessageDialog(TerrariumApp.this,
+                            message, "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Configure periodic background saving of the displayed terrarium.
+     */
+    void fileAutosaveAction() {
+        TerrariumSimulation simulation = canvas.getSimulation();
+        
+        String value = JOptionPane.showInputDialog(this,
+                "Autosave interval in seconds (0 to disable):",
+                AUTOSAVE_INTERVAL);
+        if (value == null)
+            return;
+        
+        double interval;
+        try {
+            interval = Double.parseDouble(value.trim());
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this,
+                    "Invalid interval '" + value + "'.",
+                    "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        
+        if (interval <= 0) {
+            simulation.setAutosaver(null);
+            return;
         }
+        
+        JFileChooser fc = new JFileChooser();
+        fc.setDialogTitle("Autosave directory");
+        fc.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        if (fc.showDialog(this, "Select") != JFileChooser.APPROVE_OPTION)
+            return;
+        
+        simulation.setAutosaver(new Autosaver(fc.getSelectedFile(),
+                "autosave", 0, interval, AUTOSAVE_KEEP));
     }
 
     /**
@@ -182,6 +599,13 @@ public class TerrariumApp extends JFrame {
      */
     void fileExitAction() {
         setVisible(false);
+        
+        // Let any snapshot being written finish rather than leave a
+        // partial file behind.
+        TerrariumSimulation simulation = canvas.getSimulation();
+        if (simulation != null && simulation.getAutosaver() != null)
+            simulation.getAutosaver().awaitClose();
+        
         System.exit(0);
     }
 
@@ -0,0 +1,362 @@
+/*
+ * Copyright (C) 2026 Terrarium contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package terrarium;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import javax.management.JMException;
+
+/**
+ * Headless entry point which runs a terrarium for a fixed number of ticks
+ * as fast as possible, without any display.
+ *
+ * @author Terrarium contributors
+ */
+public class TerrariumBatch {
+    
+    int width = 640, height = 480;
+    long nTicks = 1000;
+    long reportEvery = 0;
+    int threads = 1;
+    CellStorage storage = null;
+    EngineType engine = EngineType.TABLE;
+    Scene scene = Scene.HALF_DIRT;
+    long seed = 1;
+    boolean randomPhase = false;
+    File inputFile = null;
+    File outputFile = null;
+    File mappedFile = null;
+    TerrariumFile.Encoding encoding = TerrariumFile.Encoding.RLE;
+    boolean compress = true;
+    File autosaveDir = new File(".");
+    long autosaveTicks = 0;
+    double autosaveSeconds = 0;
+    int autosaveKeep = 3;
+    
+    /**
+     * Print usage information and exit.
+     * 
+     * @param message error message to display, or null
+     */
+    static void usage(String message) {
+        if (message != null)
+            System.err.println("Error: " + message);
+        
+        System.err.println("Usage: TerrariumBatch [options]\n"
+                + "Options:\n"
+                + "  -width N         terrarium width (default 640)\n"
+                + "  -height N        terrarium height (default 480)\n"
+                + "  -ticks N         number of ticks to run (default 1000)\n"
+                + "  -scene NAME      initial scene: empty, half-dirt,\n"
+                + "                   waterlogged or chambers (default\n"
+                + "                   half-dirt)\n"
+                + "  -seed N          seed used to generate the scene and drive\n"
+                + "                   the update rules (default 1)\n"
+                + "  -phases ORDER    partition phase order: cyclic or random\n"
+                + "                   (default cyclic)\n"
+                + "  -engine NAME     update engine: block, table, bit-sliced\n"
+                + "                   or one-cell (default table)\n"
+                + "  -threads N       number of update threads, block engines\n"
+                + "                   only (default 1)\n"
+                + "  -storage TYPE    cell storage: byte, nibble, chunked or\n"
+                + "                   direct (default byte)\n"
+                + "  -mapped FILE     keep the grid in FILE, mapped into memory,\n"
+                + "                   continuing from FILE if it exists; the\n"
+                + "                   grid always uses direct storage\n"
+                + "  -report N        report progress every N ticks\n"
+                + "  -input FILE      load initial state from FILE instead of\n"
+                + "                   generating a scene\n"
+                + "  -output FILE     write final state to FILE, as JSON if\n"
+                + "                   its name ends in .json\n"
+                + "  -encoding NAME   cell data encoding of saved files: raw,\n"
+                + "                   rle or padded (default rle)\n"
+                + "  -compression TYPE\n"
+                + "                   compression of saved files: deflate or\n"
+                + "                   none (default deflate).  Uncompressed\n"
+                + "                   raw files load fastest.\n"
+                + "  -autosave-ticks N\n"
+                + "                   save a snapshot every N ticks\n"
+                + "  -autosave-seconds S\n"
+                + "                   save a snapshot every S seconds\n"
+                + "  -autosave-keep K number of snapshots to keep (default 3)\n"
+                + "  -autosave-dir DIR\n"
+                + "                   directory for snapshots (default .)\n"
+                + "  -help            display this message");
+        System.exit(message == null ? 0 : 1);
+    }
+    
+    /**
+     * Parse command line arguments.
+     * 
+     * @param args 
+     */
+    void parseArgs(String[] args) {
+        try {
+            for (int i=0; i<args.length; i++) {
+                String arg = args[i];
+                
+                if (arg.equals("-help")) {
+                    usage(null);
+                }
+                
+                if (i+1 >= args.length)
+                    usage("Missing value for option " + arg + ".");
+                String value = args[++i];
+                
+                switch(arg) {
+                    case "-width":
+                        width = Integer.parseInt(value);
+                        break;
+                    case "-height":
+                        height = Integer.parseInt(value);
+                        break;
+                    case "-ticks":
+                        nTicks = Long.parseLong(value);
+                        break;
+                    case "-scene":
+                        scene = Scene.parse(value);
+                        break;
+                    case "-seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    case "-threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "-report":
+                        reportEvery = Long.parseLong(value);
+                        break;
+                    case "-input":
+                        inputFile = new File(value);
+                        break;
+                    case "-output":
+                        outputFile = new File(value);
+                        break;
+                    case "-mapped":
+                        mappedFile = new File(value);
+                        break;
+                    case "-engine":
+                        engine = EngineType.parse(value);
+                        break;
+                    case "-storage":
+                        try {
+                            storage = CellStorage.valueOf(value.toUpperCase());
+                        } catch (IllegalArgumentException ex) {
+                            usage("Unknown cell storage '" + value + "'.");
+                        }
+                        break;
+                    case "-encoding":
+                        try {
+                            encoding = TerrariumFile.Encoding.valueOf(
+                                    value.toUpperCase());
+                        } catch (IllegalArgumentException ex) {
+                            usage("Unknown encoding '" + value + "'.");
+                        }
+                        break;
+                    case "-compression":
+                        if (value.equals("deflate"))
+                            compress = true;
+                        else if (value.equals("none"))
+                            compress = false;
+                        else
+                            usage("Unknown compression '" + value + "'.");
+                        break;
+                    case "-phases":
+                        if (value.equals("cyclic"))
+                            randomPhase = false;
+                        else if (value.equals("random"))
+                            randomPhase = true;
+                        else
+                            usage("Unknown phase order '" + value + "'.");
+                        break;
+                    case "-autosave-ticks":
+                        autosaveTicks = Long.parseLong(value);
+                        break;
+                    case "-autosave-seconds":
+                        autosaveSeconds = Double.parseDouble(value);
+                        break;
+                    case "-autosave-keep":
+                        autosaveKeep = Integer.parseInt(value);
+                        break;
+                    case "-autosave-dir":
+                        autosaveDir = new File(value);
+                        break;
+                    default:
+                        usage("Unrecognised option " + arg + ".");
+                }
+            }
+        } catch (IllegalArgumentException ex) {
+            usage(ex.getMessage());
+        }
+        
+        if (width < 1 || height < 1)
+            usage("Terrarium dimensions must be positive.");
+        if (threads < 1)
+            usage("Number of threads must be positive.");
+        if (threads > 1 && engine == EngineType.ONE_CELL)
+            usage("The one-cell engine runs on a single thread.");
+        if (autosaveKeep < 1)
+            usage("Must keep at least one snapshot.");
+        if (mappedFile != null && inputFile != null)
+            usage("Options -input and -mapped cannot be combined.");
+        if (mappedFile != null && storage != null)
+            usage("Options -storage and -mapped cannot be combined.");
+        if (storage == null)
+            storage = CellStorage.BYTE;
+    }
+    
+    /**
+     * Run the simulation.
+     */
+    void run() {
+        Terrarium terrarium;
+        if (mappedFile != null && mappedFile.exists()) {
+            try {
+                terrarium = new Terrarium(
+                        engine.adopt(TerrariumFile.map(mappedFile)));
+                System.out.format("Mapped %dx%d terrarium\n",
+                        terrarium.width, terrarium.height);
+            } catch (IOException ex) {
+                System.err.println("Error mapping file "
+                        + mappedFile.getName() + ": " + ex.getMessage());
+                System.exit(1);
+                return;
+            }
+        } else if (inputFile != null) {
+            try {
+                long start = System.nanoTime();
+                terrarium = new Terrarium(
+                        engine.adopt(TerrariumFile.read(inputFile, storage)));
+                System.out.format("Loaded %dx%d terrarium in %.3f s\n",
+                        terrarium.width, terrarium.height,
+                        (System.nanoTime() - start)*1e-9);
+            } catch (IOException ex) {
+                System.err.println("Error loading file "
+                        + inputFile.getName() + ": " + ex.getMessage());
+                System.exit(1);
+                return;
+            }
+        } else {
+            CellularEngine ca;
+            if (mappedFile != null) {
+                try {
+                    ca = engine.adopt(
+                            TerrariumFile.map(mappedFile, width, height));
+                } catch (IOException ex) {
+                    System.err.println("Error creating file "
+                            + mappedFile.getName() + ": " + ex.getMessage());
+                    System.exit(1);
+                    return;
+                }
+            } else
+                ca = engine.create(width, height, storage);
+            
+            terrarium = new Terrarium(ca);
+            scene.apply(ca, seed);
+            ca.setSeed(seed);
+            ca.setRandomPhase(randomPhase);
+        }
+        
+        CellularEngine ca = terrarium.getEngine();
+        ca.setParallelism(threads);
+        
+        try {
+            terrarium.getMetrics().register();
+        } catch (JMException ex) {
+            System.err.println("Cannot publish metrics over JMX: "
+                    + ex.getMessage());
+        }
+        
+        Autosaver autosaver = null;
+        if (autosaveTicks > 0 || autosaveSeconds > 0) {
+            autosaver = new Autosaver(autosaveDir, "autosave",
+                    autosaveTicks, autosaveSeconds, autosaveKeep);
+            autosaver.setFormat(encoding, compress);
+        }
+        
+        System.out.println("Engine: " + engine);
+        System.out.println("Initial state: " + ca);
+        
+        long startTime = System.nanoTime();
+        long lastReportTime = startTime;
+        for (long tick=1; tick<=nTicks; tick++) {
+            terrarium.tick();
+            if (autosaver != null)
+                autosaver.tickCompleted(ca);
+            
+            if (reportEvery > 0 && tick % reportEvery == 0) {
+                long now = System.nanoTime();
+                System.out.format("Tick %d: %.1f ticks/s, %d swaps, %d blocks, %s\n",
+                        tick, reportEvery*1e9/(now - lastReportTime),
+                        ca.getLastSwapCount(),
+                        ca.getLastActiveBlockCount(),
+                        ca);
+                lastReportTime = now;
+            }
+        }
+        long elapsed = System.nanoTime() - startTime;
+        
+        if (autosaver != null)
+            autosaver.awaitClose();
+        
+        System.out.println("Final state: " + ca);
+        System.out.format("%d ticks in %.3f s (%.1f ticks/s)\n",
+                nTicks, elapsed*1e-9, nTicks*1e9/elapsed);
+        System.out.println("Metrics: " + terrarium.getMetrics());
+        
+        if (mappedFile != null) {
+            try {
+                TerrariumFile.flush(ca, mappedFile);
+            } catch (IOException ex) {
+                System.err.println("Error writing to file "
+                        + mappedFile.getName() + ".");
+                System.exit(1);
+            }
+        }
+        
+        if (outputFile != null) {
+            try {
+                if (outputFile.getName().endsWith(".json")) {
+                    try (PrintStream pstream = new PrintStream(outputFile)) {
+                        pstream.println(terrarium.serialize());
+                    }
+                } else
+                    TerrariumFile.write(ca, outputFile, encoding, compress);
+            } catch (IOException ex) {
+                System.err.println("Error writing to file "
+                        + outputFile.getName() + ".");
+                System.exit(1);
+            }
+        }
+        
+        ca.setParallelism(1);
+    }
+
+    /**
+     * Main method for headless runs.
+     * 
+     * @param args 
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        
+        TerrariumBatch batch = new TerrariumBatch();
+        batch.parseArgs(args);
+        batch.run();
+    }
+}
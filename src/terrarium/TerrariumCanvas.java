@@ -18,39 +18,135 @@
 package terrarium;
 
 import java.awt.Graphics;
+import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
+import java.awt.event.MouseMotionListener;
 import javax.swing.JPanel;
 import javax.swing.Timer;
 
 /**
- * Canvas on which Terrarium representation is drawn.
+ * Canvas on which Terrarium representation is drawn.  The terrarium itself
+ * is advanced on a separate simulation thread; the canvas only displays
+ * the frames it produces and forwards edits to it.
  * 
  * @author Tim Vaughan <tgvaughan@gmail.com>
  */
-public class TerrariumCanvas extends JPanel implements ActionListener, MouseListener {
+public class TerrariumCanvas extends JPanel implements
+        TerrariumSimulation.FrameListener, MouseListener, MouseMotionListener {
     
     private Terrarium terrarium;
     
-    private final Timer timer;
+    private TerrariumSimulation simulation;
+    
+    private double tickRate = 50, frameRate = 50;
+    
+    /** Materials painted with the left and right mouse buttons. */
+    private InorganicCA.CellState primaryMaterial = InorganicCA.CellState.DIRT;
+    private InorganicCA.CellState secondaryMaterial = InorganicCA.CellState.WATER;
+    
+    /** Brush radius in terrarium cells. */
+    private int brushRadius = 20;
+    
+    /**
+     * Material of the stroke in progress, or null if no button is held,
+     * and the last position it was painted at.
+     */
+    private InorganicCA.CellState strokeMaterial;
+    private int strokeX, strokeY;
+    
+    /**
+     * Stroke queued with the simulation but not yet applied.  Segments
+     * painted before the next tick are added to it rather than queued
+     * separately, so however fast the mouse moves the simulation thread
+     * sees at most one edit per tick.  Guarded by strokeLock.
+     */
+    private BrushStroke pendingStroke;
+    private final Object strokeLock = new Object();
+    
+    private final PerformanceOverlay overlay = new PerformanceOverlay();
+    private boolean overlayVisible = false;
+    
+    /**
+     * Refreshes the overlay while no frames are arriving, such as when
+     * the terrarium has settled.
+     */
+    private final Timer overlayTimer;
     
     /**
      * Construct a new empty terrarium canvas.
      */
     public TerrariumCanvas() {
-        timer = new Timer(20, this);
+        addMouseListener(this);
+        addMouseMotionListener(this);
+        
+        overlayTimer = new Timer(250, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                repaint(overlay.getBounds());
+            }
+        });
+    }
+    
+    /**
+     * Show or hide the performance overlay.
+     * 
+     * @param visible 
+     */
+    public void setOverlayVisible(boolean visible) {
+        if (visible == overlayVisible)
+            return;
+        
+        // Covers the old overlay when hiding it.
+        repaint(overlay.getBounds());
+        
+        overlayVisible = visible;
+        if (visible) {
+            overlayTimer.start();
+            repaint();
+        } else
+            overlayTimer.stop();
+    }
+    
+    public boolean isOverlayVisible() {
+        return overlayVisible;
     }
     
     /**
-     * Set the terrarium object the canvas will display.
+     * Set the terrarium object the canvas will display.  Any simulation
+     * of a previously displayed terrarium is stopped, and its autosaver
+     * closed without waiting for any snapshot it is still writing.
      * 
      * @param terrarium 
      */
     public void setTerrarium(Terrarium terrarium) {
+        if (simulation != null) {
+            simulation.stop();
+            
+            // Snapshots of the new terrarium must not replace those of
+            // the old one, so autosaving is not carried over.
+            simulation.setAutosaver(null);
+        }
+        
+        synchronized (strokeLock) {
+            pendingStroke = null;
+        }
+        strokeMaterial = null;
+        
         this.terrarium = terrarium;
-        addMouseListener(this);
+        simulation = new TerrariumSimulation(terrarium, this);
+        simulation.setTickRate(tickRate);
+        simulation.setFrameRate(frameRate);
+        repaint();
+    }
+    
+    /**
+     * @return simulation driving the displayed terrarium, or null if none.
+     */
+    public TerrariumSimulation getSimulation() {
+        return simulation;
     }
 
     
@@ -58,66 +154,220 @@ public class TerrariumCanvas extends JPanel implements ActionListener, MouseList
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
 
-        if (terrarium != null)
+        if (terrarium != null) {
             terrarium.render(g, getWidth(), getHeight());
+            
+            if (overlayVisible)
+                overlay.paint(g, simulation, terrarium.getMetrics());
+        }
     }
     
     @Override
-    public void actionPerformed(ActionEvent e) {
-        if (terrarium != null) {
-            terrarium.tick();
-            repaint();
-        }
+    public void frameReady(Rectangle region) {
+        repaintScaled(region);
+        if (overlayVisible)
+            repaint(overlay.getBounds());
+    }
+    
+    /**
+     * Schedule a repaint of the area of the canvas onto which the given
+     * region of the terrarium is drawn.
+     * 
+     * @param region region in terrarium coordinates
+     */
+    void repaintScaled(Rectangle region) {
+        double sx = getWidth()/(double)terrarium.width;
+        double sy = getHeight()/(double)terrarium.height;
+        
+        // Pad by a pixel to cover any spill from interpolation.
+        int x0 = (int)Math.floor(region.x*sx) - 1;
+        int y0 = (int)Math.floor(region.y*sy) - 1;
+        int x1 = (int)Math.ceil((region.x + region.width)*sx) + 1;
+        int y1 = (int)Math.ceil((region.y + region.height)*sy) + 1;
+        
+        repaint(x0, y0, x1 - x0, y1 - y0);
     }
     
     /**
      * Start the terrarium simulation.
      */
     public void start() {
-        timer.start();
+        if (simulation != null)
+            simulation.start();
     }
     
     /**
      * Stop/pause the simulation.
      */
     public void stop() {
-        timer.stop();
+        if (simulation != null)
+            simulation.stop();
+    }
+
+    /**
+     * Set the tick rate of the simulation.  The default is 50 ticks per
+     * second.
+     * 
+     * @param tps ticks per second
+     */
+    public void setTickRate(double tps) {
+        tickRate = tps;
+        if (simulation != null)
+            simulation.setTickRate(tps);
     }
 
     /**
-     * Set the frame rate of the simulation.  The default is 50 frames
-     * per second.
+     * Set the rate at which new frames are displayed.  The default is 50
+     * frames per second.
      * 
      * @param fps frames per second
      */
     public void setFrameRate(double fps) {
-        int millis = (int)(1000.0/fps);
-        timer.setDelay(millis);
+        frameRate = fps;
+        if (simulation != null)
+            simulation.setFrameRate(fps);
     }
     
-    @Override
-    public void mouseClicked(MouseEvent e) {
-        if (terrarium != null) {
-            switch(e.getButton()) {
-                case MouseEvent.BUTTON1:
-                    terrarium.addDirt(e.getX()*terrarium.width/getWidth(),
-                            e.getY()*terrarium.height/getHeight(), 20);
-                    break;
-                    
-                case MouseEvent.BUTTON3:
-                    terrarium.addWater(e.getX()*terrarium.width/getWidth(),
-                            e.getY()*terrarium.height/getHeight(), 20);
+    /**
+     * Set the materials painted by the left and right mouse buttons.
+     * 
+     * @param primary material painted with the left button
+     * @param secondary material painted with the right button
+     */
+    public void setBrushMaterials(InorganicCA.CellState primary,
+            InorganicCA.CellState secondary) {
+        primaryMaterial = primary;
+        secondaryMaterial = secondary;
+    }
+    
+    public InorganicCA.CellState getPrimaryMaterial() {
+        return primaryMaterial;
+    }
+    
+    public InorganicCA.CellState getSecondaryMaterial() {
+        return secondaryMaterial;
+    }
+    
+    /**
+     * Set the brush radius.  The default is 20 cells.
+     * 
+     * @param radius radius in terrarium cells
+     */
+    public void setBrushRadius(int radius) {
+        if (radius < 1)
+            throw new IllegalArgumentException("Brush radius must be positive.");
+        brushRadius = radius;
+    }
+    
+    public int getBrushRadius() {
+        return brushRadius;
+    }
+    
+    /**
+     * Paint a segment of the current stroke, adding it to the pending
+     * edit if there is one which it can join.
+     * 
+     * @param x0
+     * @param y0
+     * @param x1
+     * @param y1 
+     */
+    private void paintSegment(int x0, int y0, int x1, int y1) {
+        final Terrarium t = terrarium;
+        final BrushStroke stroke;
+        synchronized (strokeLock) {
+            if (pendingStroke != null
+                    && pendingStroke.getState() == strokeMaterial
+                    && pendingStroke.getRadius() == brushRadius) {
+                pendingStroke.addSegment(x0, y0, x1, y1);
+                return;
             }
-
+            
+            stroke = new BrushStroke(strokeMaterial, brushRadius,
+                    t.width, t.height);
+            stroke.addSegment(x0, y0, x1, y1);
+            pendingStroke = stroke;
         }
+        
+        // Applied at once, and displayed, if the simulation is stopped.
+        simulation.submit(new Runnable() {
+            @Override
+            public void run() {
+                // Closed to further segments before it is applied.
+                synchronized (strokeLock) {
+                    if (pendingStroke == stroke)
+                        pendingStroke = null;
+                }
+                t.paint(stroke);
+            }
+        });
+    }
+    
+    /**
+     * @param e
+     * @return terrarium column under the mouse.
+     */
+    private int terrariumX(MouseEvent e) {
+        return (int)((long)e.getX()*terrarium.width/getWidth());
+    }
+    
+    /**
+     * @param e
+     * @return terrarium row under the mouse.
+     */
+    private int terrariumY(MouseEvent e) {
+        return (int)((long)e.getY()*terrarium.height/getHeight());
+    }
+    
+    @Override
+    public void mouseClicked(MouseEvent e) {
     }
 
     @Override
     public void mousePressed(MouseEvent e) {
+        if (terrarium == null || strokeMaterial != null)
+            return;
+        
+        switch(e.getButton()) {
+            case MouseEvent.BUTTON1:
+                strokeMaterial = primaryMaterial;
+                break;
+                
+            case MouseEvent.BUTTON3:
+                strokeMaterial = secondaryMaterial;
+                break;
+                
+            default:
+                return;
+        }
+        
+        strokeX = terrariumX(e);
+        strokeY = terrariumY(e);
+        paintSegment(strokeX, strokeY, strokeX, strokeY);
     }
 
     @Override
     public void mouseReleased(MouseEvent e) {
+        strokeMaterial = null;
+    }
+    
+    @Override
+    public void mouseDragged(MouseEvent e) {
+        if (strokeMaterial == null)
+            return;
+        
+        int x = terrariumX(e);
+        int y = terrariumY(e);
+        if (x == strokeX && y == strokeY)
+            return;
+        
+        paintSegment(strokeX, strokeY, x, y);
+        strokeX = x;
+        strokeY = y;
+    }
+
+    @Override
+    public void mouseMoved(MouseEvent e) {
     }
 
     @Override
@@ -0,0 +1,753 @@
+/*
+ * Copyright (C) 2026 Terrarium contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package terrarium;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StreamTokenizer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reading and writing of the compact binary .terrarium format.
+ * 
+ * A file consists of the following header, written big-endian:
+ * 
+ *   int    magic number 0x5452524D ("TRRM")
+ *   short  format version
+ *   short  flags (bit 0 set if the cell data is Deflate compressed,
+ *          bit 1 set if the partition phase is chosen at random)
+ *   byte   cell data encoding (0 = raw, 1 = run-length, 2 = padded)
+ *   int    width
+ *   int    height
+ *   int    phase of the Margolus partition
+ *   long   state of the CA's random number generator
+ * 
+ * followed by the cell states in row-major order.  Raw cell data holds
+ * one state ordinal per byte.  Run-length data is a sequence of runs, each
+ * a state ordinal byte followed by the run length as an unsigned LEB128
+ * varint.  Runs may continue across row boundaries, and must cover the
+ * grid exactly, with nothing after the last one.  Padded data is raw
+ * data for the whole grid used by InorganicCA, including its border of
+ * WALL cells, which are ignored on reading.
+ * 
+ * Files holding uncompressed raw cell data are loaded by memory mapping
+ * them and bulk copying the rows into the grid.  Uncompressed padded
+ * files can instead be mapped and used as the grid itself, so that a
+ * running CA is saved simply by flushing it to disk.  Files written by
+ * Terrarium.serialize() can also be read.
+ *
+ * @author Terrarium contributors
+ */
+public class TerrariumFile {
+    
+    static final int MAGIC = 0x5452524D;
+    static final short VERSION = 1;
+    
+    static final short FLAG_DEFLATE = 1;
+    static final short FLAG_RANDOM_PHASE = 2;
+    
+    /** Size of the header in bytes. */
+    static final int HEADER_SIZE = 4 + 2 + 2 + 1 + 4 + 4 + 4 + 8;
+    
+    /** Maximum number of bytes of cell data mapped at once. */
+    static final int MAX_MAP_SIZE = 1 << 28;
+    
+    /** Cell data encodings. */
+    public enum Encoding {
+        RAW, RLE, PADDED
+    }
+    
+    /**
+     * Write the CA to a file using run-length encoded, compressed cell data.
+     * 
+     * @param ca
+     * @param file
+     * @throws IOException 
+     */
+    public static void write(CellularEngine ca, File file) throws IOException {
+        write(ca, file, Encoding.RLE, true);
+    }
+    
+    /**
+     * Write the CA to a file.  The data is written to a temporary file
+     * alongside it, named by appending ".tmp", which then replaces the
+     * file, so that a failed write never destroys an existing file.
+     * 
+     * @param ca
+     * @param file
+     * @param encoding encoding used for the cell data
+     * @param compress if true, cell data is Deflate compressed
+     * @throws IOException 
+     */
+    public static void write(CellularEngine ca, File file, Encoding encoding,
+            boolean compress) throws IOException {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmpFile.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                write(ca, Channels.newOutputStream(channel), encoding, compress);
+                channel.force(false);
+            }
+            
+            try {
+                Files.move(tmpFile.toPath(), file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmpFile.toPath(), file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException ex) {
+            tmpFile.delete();
+            throw ex;
+        }
+    }
+    
+    /**
+     * Write the CA to a stream.  The stream is flushed but not closed.
+     * 
+     * @param ca
+     * @param stream
+     * @param encoding encoding used for the cell data
+     * @param compress if true, cell data is Deflate compressed
+     * @throws IOException 
+     */
+    public static void write(CellularEngine ca, OutputStream stream,
+            Encoding encoding, boolean compress) throws IOException {
+        
+        DataOutputStream headerOut = new DataOutputStream(
+                new BufferedOutputStream(stream, 1 << 16));
+        DataOutputStream out = headerOut;
+        writeHeader(ca, out, encoding, compress);
+        
+        // The stream is left open, so the Deflater's native memory must be
+        // released here rather than by closing the DeflaterOutputStream.
+        Deflater def = null;
+        try {
+            DeflaterOutputStream deflater = null;
+            if (compress) {
+                def = new Deflater(Deflater.BEST_SPEED);
+                deflater = new DeflaterOutputStream(out, def, 1 << 16);
+                out = new DataOutputStream(new BufferedOutputStream(deflater, 1 << 16));
+            }
+            
+            switch (encoding) {
+                case RAW:
+                    writeRaw(ca, out);
+                    break;
+                case RLE:
+                    writeRLE(ca, out);
+                    break;
+                case PADDED:
+                    writePadded(ca, out);
+                    break;
+            }
+            
+            out.flush();
+            if (deflater != null)
+                deflater.finish();
+            headerOut.flush();
+        } finally {
+            if (def != null)
+                def.end();
+        }
+    }
+    
+    private static void writeHeader(CellularEngine ca, DataOutputStream out,
+            Encoding encoding, boolean compress) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeShort((compress ? FLAG_DEFLATE : 0)
+                | (ca.isRandomPhase() ? FLAG_RANDOM_PHASE : 0));
+        out.writeByte(encoding.ordinal());
+        out.writeInt(ca.getWidth());
+        out.writeInt(ca.getHeight());
+        out.writeInt(ca.getPhase());
+        out.writeLong(ca.getSeed());
+    }
+    
+    private static void writeRaw(CellularEngine ca, DataOutputStream out)
+            throws IOException {
+        int width = ca.getWidth();
+        byte[] row = new byte[width];
+        ByteBuffer rowBuffer = ByteBuffer.wrap(row);
+        for (int i=0; i<ca.getHeight(); i++) {
+            rowBuffer.clear();
+            ca.copyRow(i, 0, rowBuffer, width);
+            out.write(row);
+        }
+    }
+    
+    private static void writePadded(CellularEngine ca, DataOutputStream out)
+            throws IOException {
+        int width = ca.getWidth();
+        byte[] row = new byte[width + 2];
+        ByteBuffer rowBuffer = ByteBuffer.wrap(row);
+        
+        byte wall = (byte)InorganicCA.CellState.WALL.ordinal();
+        Arrays.fill(row, wall);
+        out.write(row);
+        for (int i=0; i<ca.getHeight(); i++) {
+            rowBuffer.position(1);
+            ca.copyRow(i, 0, rowBuffer, width);
+            out.write(row);
+        }
+        Arrays.fill(row, wall);
+        out.write(row);
+    }
+    
+    private static void writeRLE(CellularEngine ca, DataOutputStream out)
+            throws IOException {
+        int width = ca.getWidth();
+        byte[] row = new byte[width];
+        ByteBuffer rowBuffer = ByteBuffer.wrap(row);
+        
+        int runState = -1;
+        int runLength = 0;
+        for (int i=0; i<ca.getHeight(); i++) {
+            rowBuffer.clear();
+            ca.copyRow(i, 0, rowBuffer, width);
+            for (int j=0; j<width; j++) {
+                int state = row[j];
+                if (state != runState) {
+                    if (runLength > 0) {
+                        out.writeByte(runState);
+                        writeVarInt(out, runLength);
+                    }
+                    runState = state;
+                    runLength = 0;
+                }
+                runLength += 1;
+            }
+        }
+        out.writeByte(runState);
+        writeVarInt(out, runLength);
+    }
+    
+    private static void writeVarInt(DataOutputStream out, int value)
+            throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+    
+    /**
+     * Read a CA from a file, which may be either a binary terrarium file
+     * or a JSON file produced by Terrarium.serialize().
+     * 
+     * @param file
+     * @return CA
+     * @throws IOException if the file does not hold a valid terrarium.
+     */
+    public static CellularEngine read(File file) throws IOException {
+        return read(file, CellStorage.BYTE);
+    }
+    
+    /**
+     * Read a CA from a file into a grid using the given storage.
+     * 
+     * @param file
+     * @param storage storage backend for the CA's cell grid
+     * @return CA
+     * @throws IOException if the file does not hold a valid terrarium.
+     */
+    public static CellularEngine read(File file, CellStorage storage)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            
+            ByteBuffer headerBuffer = ByteBuffer.allocate(HEADER_SIZE);
+            while (headerBuffer.hasRemaining() && channel.read(headerBuffer) >= 0) {
+            }
+            headerBuffer.flip();
+            
+            if (headerBuffer.hasRemaining() && headerBuffer.get(0) == '{') {
+                channel.position(0);
+                return readJSON(Channels.newReader(channel, "UTF-8"), storage);
+            }
+            
+            if (headerBuffer.remaining() == HEADER_SIZE) {
+                Header header = new Header(new DataInputStream(
+                        new ByteArrayInputStream(headerBuffer.array())));
+                if (header.encoding == Encoding.RAW
+                        && (header.flags & FLAG_DEFLATE) == 0)
+                    return readMapped(channel, header, storage);
+            }
+            
+            channel.position(0);
+            return read(Channels.newInputStream(channel), storage);
+        }
+    }
+    
+    /**
+     * Read a CA from a stream.
+     * 
+     * @param stream
+     * @return CA
+     * @throws IOException if the stream does not hold a valid terrarium.
+     */
+    public static CellularEngine read(InputStream stream) throws IOException {
+        return read(stream, CellStorage.BYTE);
+    }
+    
+    /**
+     * Read a CA from a stream into a grid using the given storage.
+     * 
+     * @param stream
+     * @param storage storage backend for the CA's cell grid
+     * @return CA
+     * @throws IOException if the stream does not hold a valid terrarium.
+     */
+    public static CellularEngine read(InputStream stream, CellStorage storage)
+            throws IOException {
+        try {
+            return readStream(stream, storage);
+        } catch (EOFException ex) {
+            throw new IOException("Unexpected end of terrarium file.", ex);
+        }
+    }
+    
+    private static InorganicCA readStream(InputStream stream,
+            CellStorage storage) throws IOException {
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(stream, 1 << 16));
+        
+        Header header = new Header(in);
+        
+        if ((header.flags & FLAG_DEFLATE) != 0)
+            in = new DataInputStream(new BufferedInputStream(
+                    new InflaterInputStream(in), 1 << 16));
+        
+        InorganicCA ca = new InorganicCA(header.width, header.height, storage);
+        header.apply(ca);
+        
+        switch (header.encoding) {
+            case RAW:
+                readRaw(ca, in);
+                break;
+            case RLE:
+                readRLE(ca, in);
+                break;
+            case PADDED:
+                readPadded(ca, in);
+                break;
+        }
+        
+        ca.recountPopulation();
+        ca.wakeAllTiles();
+        return ca;
+    }
+    
+    /**
+     * Create a terrarium file holding an empty CA and map it into memory
+     * to serve as the CA's grid.  Changes to the CA are written to the
+     * file when flush() is called, or at the latest when the CA is
+     * garbage collected.
+     * 
+     * @param file file to create, replacing any existing file
+     * @param width
+     * @param height
+     * @return CA backed by the file
+     * @throws IOException 
+     */
+    public static CellularEngine map(File file, int width, int height)
+            throws IOException {
+        checkDimensions(width, height);
+        int size = CellStorage.cellCount(height + 2, width + 2);
+        
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            
+            InorganicCA ca = new InorganicCA(width, height,
+                    DirectCellGrid.map(channel, HEADER_SIZE, size));
+            ca.initEmpty();
+            writeHeader(ca, channel);
+            return ca;
+        }
+    }
+    
+    /**
+     * Map an existing uncompressed padded terrarium file into memory to
+     * serve as the grid of a CA.
+     * 
+     * @param file
+     * @return CA backed by the file
+     * @throws IOException if the file cannot be mapped.
+     */
+    public static CellularEngine map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            
+            ByteBuffer headerBuffer = ByteBuffer.allocate(HEADER_SIZE);
+            while (headerBuffer.hasRemaining() && channel.read(headerBuffer) >= 0) {
+            }
+            if (headerBuffer.hasRemaining())
+                throw new IOException("Truncated terrarium file.");
+            
+            Header header = new Header(new DataInputStream(
+                    new ByteArrayInputStream(headerBuffer.array())));
+            if (header.encoding != Encoding.PADDED
+                    || (header.flags & FLAG_DEFLATE) != 0)
+                throw new IOException("Only uncompressed padded terrarium "
+                        + "files can be mapped.");
+            
+            long size = ((long)header.width + 2)*((long)header.height + 2);
+            if (HEADER_SIZE + size > channel.size())
+                throw new IOException("Truncated terrarium file.");
+            
+            InorganicCA ca = new InorganicCA(header.width, header.height,
+                    DirectCellGrid.map(channel, HEADER_SIZE, (int)size));
+            header.apply(ca);
+            
+            for (int i=0; i<ca.height; i++) {
+                int rowStart = ca.index(i, 0);
+                for (int j=0; j<ca.width; j++)
+                    checkState(ca.cells.get(rowStart + j));
+            }
+            ca.fillBorder();
+            ca.recountPopulation();
+            ca.wakeAllTiles();
+            return ca;
+        }
+    }
+    
+    /**
+     * Bring the file backing a mapped CA up to date.
+     * 
+     * @param ca CA returned by map()
+     * @param file file the CA was mapped from
+     * @throws IOException 
+     */
+    public static void flush(CellularEngine ca, File file) throws IOException {
+        if (!ca.isFileBacked())
+            throw new IllegalArgumentException("CA is not backed by a file.");
+        
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.WRITE)) {
+            writeHeader(ca, channel);
+        }
+        ca.flush();
+    }
+    
+    /**
+     * Write the header of an uncompressed padded file describing a CA to
+     * the start of a channel.
+     * 
+     * @param ca
+     * @param channel
+     * @throws IOException 
+     */
+    private static void writeHeader(CellularEngine ca, FileChannel channel)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_SIZE);
+        writeHeader(ca, new DataOutputStream(bytes), Encoding.PADDED, false);
+        
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        long position = 0;
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+    }
+    
+    /**
+     * Contents of a file header.
+     */
+    static class Header {
+        final short version, flags;
+        final Encoding encoding;
+        final int width, height, phase;
+        final long seed;
+        
+        /**
+         * Read and validate a header.
+         * 
+         * @param in
+         * @throws IOException if the header is invalid.
+         */
+        Header(DataInputStream in) throws IOException {
+            if (in.readInt() != MAGIC)
+                throw new IOException("Not a terrarium file.");
+            
+            version = in.readShort();
+            if (version < 1 || version > VERSION)
+                throw new IOException("Unsupported terrarium file version " + version + ".");
+            
+            flags = in.readShort();
+            int encodingOrdinal = in.readByte();
+            if (encodingOrdinal < 0 || encodingOrdinal >= Encoding.values().length)
+                throw new IOException("Unknown cell data encoding.");
+            encoding = Encoding.values()[encodingOrdinal];
+            
+            width = in.readInt();
+            height = in.readInt();
+            phase = in.readInt();
+            seed = in.readLong();
+            
+            checkDimensions(width, height);
+            if (phase < 0 || phase >= InorganicCA.PHASES)
+                throw new IOException("Invalid partition phase.");
+        }
+        
+        /**
+         * Restore the phase and random number generator state of a CA.
+         * 
+         * @param ca 
+         */
+        void apply(InorganicCA ca) {
+            ca.phase = phase;
+            ca.randomPhase = (flags & FLAG_RANDOM_PHASE) != 0;
+            ca.setSeed(seed);
+        }
+    }
+    
+    /**
+     * Read uncompressed raw cell data by mapping it into memory and copying
+     * it straight into the grid, a block of rows at a time.
+     * 
+     * @param channel
+     * @param header
+     * @param storage
+     * @return CA
+     * @throws IOException 
+     */
+    private static InorganicCA readMapped(FileChannel channel, Header header,
+            CellStorage storage) throws IOException {
+        
+        InorganicCA ca = new InorganicCA(header.width, header.height, storage);
+        header.apply(ca);
+        
+        if (HEADER_SIZE + (long)ca.width*ca.height > channel.size())
+            throw new IOException("Truncated terrarium file.");
+        
+        int rowsPerMap = Math.max(1, MAX_MAP_SIZE/ca.width);
+        long position = HEADER_SIZE;
+        for (int i=0; i<ca.height; i += rowsPerMap) {
+            int nRows = Math.min(rowsPerMap, ca.height - i);
+            long size = (long)nRows*ca.width;
+            
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                    position, size);
+            checkStates(buffer);
+            for (int r=0; r<nRows; r++)
+                ca.cells.copyFrom(ca.index(i + r, 0), buffer, ca.width);
+            
+            position += size;
+        }
+        
+        ca.recountPopulation();
+        ca.wakeAllTiles();
+        return ca;
+    }
+    
+    private static void readRaw(InorganicCA ca, DataInputStream in)
+            throws IOException {
+        byte[] row = new byte[ca.width];
+        ByteBuffer rowBuffer = ByteBuffer.wrap(row);
+        for (int i=0; i<ca.height; i++) {
+            in.readFully(row);
+            rowBuffer.clear();
+            checkStates(rowBuffer);
+            ca.cells.copyFrom(ca.index(i, 0), rowBuffer, ca.width);
+        }
+    }
+    
+    private static void readPadded(InorganicCA ca, DataInputStream in)
+            throws IOException {
+        byte[] row = new byte[ca.stride];
+        ByteBuffer rowBuffer = ByteBuffer.wrap(row);
+        in.readFully(row);
+        for (int i=0; i<ca.height; i++) {
+            in.readFully(row);
+            rowBuffer.clear();
+            checkStates(rowBuffer);
+            rowBuffer.position(1);
+            ca.cells.copyFrom(ca.index(i, 0), rowBuffer, ca.width);
+        }
+        in.readFully(row);
+    }
+    
+    private static void readRLE(InorganicCA ca, DataInputStream in)
+            throws IOException {
+        CellGrid cells = ca.cells;
+        int runState = 0, runLength = 0;
+        for (int i=0; i<ca.height; i++) {
+            int rowStart = ca.index(i, 0);
+            for (int j=0; j<ca.width; j++) {
+                while (runLength == 0) {
+                    runState = checkState(in.readByte());
+                    runLength = readVarInt(in);
+                }
+                cells.set(rowStart + j, runState);
+                runLength -= 1;
+            }
+        }
+        
+        if (runLength != 0)
+            throw new IOException("Run extends past the end of the grid.");
+        if (in.read() >= 0)
+            throw new IOException("Unexpected data after the last run.");
+    }
+    
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift=0; shift<32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed run length.");
+    }
+    
+    /**
+     * Check that a grid of the given size, together with its border, can
+     * be held in any of the storage backends.
+     * 
+     * @param width
+     * @param height
+     * @throws IOException if either dimension is not positive, or the
+     * padded grid has more cells than can be indexed by int.
+     */
+    private static void checkDimensions(int width, int height)
+            throws IOException {
+        if (width < 1 || height < 1)
+            throw new IOException("Invalid terrarium dimensions.");
+        if (((long)width + 2)*((long)height + 2) > Integer.MAX_VALUE)
+            throw new IOException("Terrarium too large.");
+    }
+    
+    private static int checkState(int state) throws IOException {
+        if (state < 0 || state >= InorganicCA.STATES.length)
+            throw new IOException("Invalid cell state " + state + ".");
+        return state;
+    }
+    
+    /**
+     * Check that the remaining bytes of a buffer are all valid state
+     * ordinals, without changing its position.
+     * 
+     * @param buffer
+     * @throws IOException if an invalid state is found.
+     */
+    private static void checkStates(ByteBuffer buffer) throws IOException {
+        for (int k=buffer.position(); k<buffer.limit(); k++)
+            checkState(buffer.get(k));
+    }
+    
+    /**
+     * Read a CA from the JSON representation produced by
+     * Terrarium.serialize() or InorganicCA.serialize().
+     * 
+     * @param reader
+     * @return CA
+     * @throws IOException if the JSON does not describe a terrarium.
+     */
+    public static CellularEngine readJSON(Reader reader) throws IOException {
+        return readJSON(reader, CellStorage.BYTE);
+    }
+    
+    /**
+     * Read a CA from JSON into a grid using the given storage.
+     * 
+     * @param reader
+     * @param storage storage backend for the CA's cell grid
+     * @return CA
+     * @throws IOException if the JSON does not describe a terrarium.
+     */
+    public static CellularEngine readJSON(Reader reader, CellStorage storage)
+            throws IOException {
+        StreamTokenizer tok = new StreamTokenizer(new BufferedReader(reader));
+        
+        int width = -1, height = -1;
+        while (tok.nextToken() != StreamTokenizer.TT_EOF) {
+            if (tok.ttype != '"')
+                continue;
+            
+            switch (tok.sval) {
+                case "width":
+                    width = nextInt(tok);
+                    break;
+                    
+                case "height":
+                    height = nextInt(tok);
+                    break;
+                    
+                case "states":
+                    checkDimensions(width, height);
+                    
+                    InorganicCA ca;
+                    try {
+                        ca = new InorganicCA(width, height, storage);
+                    } catch (IllegalArgumentException ex) {
+                        throw new IOException("Terrarium too large.", ex);
+                    }
+                    for (int i=0; i<height; i++) {
+                        int rowStart = ca.index(i, 0);
+                        for (int j=0; j<width; j++)
+                            ca.cells.set(rowStart + j, checkState(nextInt(tok)));
+                    }
+                    ca.recountPopulation();
+                    ca.wakeAllTiles();
+                    return ca;
+            }
+        }
+        
+        throw new IOException("No cell states found.");
+    }
+    
+    /**
+     * Skip JSON punctuation until the next number, which is returned.
+     * 
+     * @param tok
+     * @return number
+     * @throws IOException if something other than punctuation precedes
+     * the number.
+     */
+    private static int nextInt(StreamTokenizer tok) throws IOException {
+        while (tok.nextToken() != StreamTokenizer.TT_NUMBER) {
+            if (tok.ttype != ':' && tok.ttype != ',' && tok.ttype != '[')
+                throw new IOException("Malformed terrarium JSON.");
+        }
+        return (int)tok.nval;
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2026 Terrarium contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package terrarium;
+
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Per-tick performance metrics of a terrarium.
+ * 
+ * The terrarium records the duration of each tick and render, along with
+ * the swap, active block and population counts maintained by its CA.
+ * These are recorded on the simulation thread and may be read from any
+ * thread, including over JMX once register() has been called.
+ *
+ * @author Terrarium contributors
+ */
+public class TerrariumMetrics implements TerrariumMetricsMBean {
+    
+    /** Name under which metrics are registered with the platform MBean server. */
+    public static final String OBJECT_NAME = "terrarium:type=Metrics";
+    
+    static final double NANOS_PER_MILLI = 1e6;
+    
+    final LatencyHistogram tickTimes = new LatencyHistogram();
+    final LatencyHistogram renderTimes = new LatencyHistogram();
+    
+    long lastTickTime, lastRenderTime;
+    long lastSwaps;
+    int lastActiveBlocks;
+    final int[] population = new int[InorganicCA.STATES.length];
+    
+    /**
+     * Record the completion of a tick of the given CA.
+     * 
+     * @param ca
+     * @param nanos duration of the tick in nanoseconds
+     */
+    synchronized void tickCompleted(CellularEngine ca, long nanos) {
+        tickTimes.record(nanos);
+        lastTickTime = nanos;
+        lastSwaps = ca.getLastSwapCount();
+        lastActiveBlocks = ca.getLastActiveBlockCount();
+        for (int s=0; s<population.length; s++)
+            population[s] = ca.getPopulation(InorganicCA.STATES[s]);
+    }
+    
+    /**
+     * Record the completion of a render.
+     * 
+     * @param nanos duration of the render in nanoseconds
+     */
+    synchronized void renderCompleted(long nanos) {
+        renderTimes.record(nanos);
+        lastRenderTime = nanos;
+    }
+    
+    /**
+     * Publish these metrics over JMX, replacing any previously registered
+     * terrarium metrics.
+     * 
+     * @throws JMException if registration fails.
+     */
+    public void register() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (server.isRegistered(name))
+            server.unregisterMBean(name);
+        server.registerMBean(this, name);
+    }
+    
+    @Override
+    public synchronized long getTickCount() {
+        return tickTimes.getCount();
+    }
+
+    @Override
+    public synchronized double getLastTickMillis() {
+        return lastTickTime/NANOS_PER_MILLI;
+    }
+
+    @Override
+    public synchronized double getMeanTickMillis() {
+        return tickTimes.getMean()/NANOS_PER_MILLI;
+    }
+
+    @Override
+    public synchronized double getMedianTickMillis() {
+        return tickTimes.getValueAtPercentile(50)/NANOS_PER_MILLI;
+    }
+
+    @Override
+    public synchronized double getTickMillis99() {
+        return tickTimes.getValueAtPercentile(99)/NANOS_PER_MILLI;
+    }
+
+    @Override
+    public synchronized double getMaxTickMillis() {
+        return tickTimes.getMax()/NANOS_PER_MILLI;
+    }
+
+    @Override
+    public synchronized long getFrameCount() {
+        return renderTimes.getCount();
+    }
+
+    @Override
+    public synchronized double getLastRenderMillis() {
+        return lastRenderTime/NANOS_PER_MILLI;
+    }
+
+    @Override
+    public synchronized double getMeanRenderMillis() {
+        return renderTimes.getMean()/NANOS_PER_MILLI;
+    }
+
+    @Override
+    public synchronized double getMedianRenderMillis() {
+        return renderTimes.getValueAtPercentile(50)/NANOS_PER_MILLI;
+    }
+
+    @Override
+    public synchronized double getRenderMillis99() {
+        return renderTimes.getValueAtPercentile(99)/NANOS_PER_MILLI;
+    }
+
+    @Override
+    public synchronized double getMaxRenderMillis() {
+        return renderTimes.getMax()/NANOS_PER_MILLI;
+    }
+
+    @Override
+    public synchronized long getLastSwapCount() {
+        return lastSwaps;
+    }
+
+    @Override
+    public synchronized int getLastActiveBlockCount() {
+        return lastActiveBlocks;
+    }
+
+    @Override
+    public String[] getStateNames() {
+        String[] names = new String[InorganicCA.STATES.length];
+        for (int s=0; s<names.length; s++)
+            names[s] = InorganicCA.STATES[s].name();
+        return names;
+    }
+
+    @Override
+    public synchronized int[] getPopulationCounts() {
+        return population.clone();
+    }
+
+    /**
+     * Copy the population counts into an existing array, avoiding the
+     * allocation made by getPopulationCounts().
+     * 
+     * @param counts array of length at least the number of cell states
+     */
+    synchronized void copyPopulationCounts(int[] counts) {
+        System.arraycopy(population, 0, counts, 0, population.length);
+    }
+
+    @Override
+    public synchronized void reset() {
+        tickTimes.reset();
+        renderTimes.reset();
+    }
+    
+    @Override
+    public synchronized String toString() {
+        return String.format("tick median %.3f ms, 99%% %.3f ms, max %.3f ms; "
+                + "render median %.3f ms, 99%% %.3f ms, max %.3f ms",
+                getMedianTickMillis(), getTickMillis99(), getMaxTickMillis(),
+                getMedianRenderMillis(), getRenderMillis99(), getMaxRenderMillis());
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2026 Terrarium contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package terrarium;
+
+/**
+ * Management interface through which terrarium metrics are published over
+ * JMX.  Durations are in milliseconds.
+ *
+ * @author Terrarium contributors
+ */
+public interface TerrariumMetricsMBean {
+    
+    public long getTickCount();
+    public double getLastTickMillis();
+    public double getMeanTickMillis();
+    public double getMedianTickMillis();
+    public double getTickMillis99();
+    public double getMaxTickMillis();
+    
+    public long getFrameCount();
+    public double getLastRenderMillis();
+    public double getMeanRenderMillis();
+    public double getMedianRenderMillis();
+    public double getRenderMillis99();
+    public double getMaxRenderMillis();
+    
+    public long getLastSwapCount();
+    public int getLastActiveBlockCount();
+    
+    /**
+     * @return names of the cell states, in the order used by
+     * getPopulationCounts().
+     */
+    public String[] getStateNames();
+    public int[] getPopulationCounts();
+    
+    /**
+     * Discard all timings recorded so far.
+     */
+    public void reset();
+}
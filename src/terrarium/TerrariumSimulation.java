@@ -0,0 +1,381 @@
+/*
+ * Copyright (C) 2026 Terrarium contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package terrarium;
+
+import java.awt.Rectangle;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Runs a terrarium on its own thread, decoupled from the Swing event
+ * dispatch thread.  The simulation thread rasterises new frames into the
+ * terrarium's back buffer and hands them over, so that painting only ever
+ * has to blit the latest completed frame.
+ * 
+ * Ticks and frames are scheduled independently on fixed timesteps.  When
+ * the simulation falls behind it runs several ticks back to back,
+ * skipping frames rather than ticks, so that simulated time keeps pace
+ * with real time.  Should the backlog exceed the catch-up limit the excess
+ * ticks are dropped instead.
+ * 
+ * All changes to the terrarium made from other threads must go through
+ * submit() or call(), which queue them for application between ticks.
+ * While the simulation is stopped they are applied straight away.
+ *
+ * @author Terrarium contributors
+ */
+public class TerrariumSimulation implements Runnable {
+    
+    /**
+     * Interface for objects wanting to know when new frames are ready.
+     * Listeners are called on the simulation thread.
+     */
+    public interface FrameListener {
+        
+        /**
+         * Called when a new frame has been produced.
+         * 
+         * @param region region of the terrarium which differs from the
+         * previous frame
+         */
+        public void frameReady(Rectangle region);
+    }
+    
+    final Terrarium terrarium;
+    final FrameListener listener;
+    
+    final ConcurrentLinkedQueue<Runnable> commands = new ConcurrentLinkedQueue<>();
+    
+    Thread thread;
+    volatile boolean running = false;
+    
+    /** Target times between ticks and between frames in nanoseconds. */
+    volatile long tickPeriod = 20000000L;
+    volatile long framePeriod = 20000000L;
+    
+    /** Maximum number of overdue ticks run in one go before giving up. */
+    volatile int maxCatchUp = 10;
+    
+    /** Rates achieved over the last measurement interval. */
+    volatile double achievedTickRate, achievedFrameRate;
+    
+    /** Number of ticks dropped since the simulation started. */
+    volatile long droppedTicks;
+    
+    static final long RATE_INTERVAL = 1000000000L;
+    
+    /** Autosaver notified after each tick, or null. */
+    volatile Autosaver autosaver;
+    
+    /**
+     * Create a new simulation.
+     * 
+     * @param terrarium terrarium to simulate
+     * @param listener listener to notify of new frames, or null
+     */
+    public TerrariumSimulation(Terrarium terrarium, FrameListener listener) {
+        this.terrarium = terrarium;
+        this.listener = listener;
+    }
+    
+    /**
+     * @return the terrarium being simulated.
+     */
+    public Terrarium getTerrarium() {
+        return terrarium;
+    }
+    
+    /**
+     * Start the simulation thread.  Does nothing if already started.
+     */
+    public synchronized void start() {
+        if (running)
+            return;
+        
+        running = true;
+        thread = new Thread(this, "Terrarium simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Stop the simulation thread, waiting for the current tick to finish.
+     */
+    public synchronized void stop() {
+        if (!running)
+            return;
+        
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+    
+    /**
+     * @return true if the simulation thread is running.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+    
+    /**
+     * Set the target tick rate of the simulation.  The default is 50 ticks
+     * per second.
+     * 
+     * @param tps ticks per second
+     */
+    public void setTickRate(double tps) {
+        tickPeriod = (long)(1e9/tps);
+    }
+    
+    /**
+     * @return target number of ticks per second.
+     */
+    public double getTickRate() {
+        return 1e9/tickPeriod;
+    }
+    
+    /**
+     * Set the target frame rate of the simulation.  The default is 50
+     * frames per second.
+     * 
+     * @param fps frames per second
+     */
+    public void setFrameRate(double fps) {
+        framePeriod = (long)(1e9/fps);
+    }
+    
+    /**
+     * @return target number of frames per second.
+     */
+    public double getFrameRate() {
+        return 1e9/framePeriod;
+    }
+    
+    /**
+     * Set the maximum number of overdue ticks which will be run back to
+     * back when the simulation falls behind.
+     * 
+     * @param maxCatchUp 
+     */
+    public void setMaxCatchUp(int maxCatchUp) {
+        if (maxCatchUp < 1)
+            throw new IllegalArgumentException("Catch-up limit must be positive.");
+        this.maxCatchUp = maxCatchUp;
+    }
+    
+    /**
+     * @return ticks per second achieved over the last second.
+     */
+    public double getAchievedTickRate() {
+        return achievedTickRate;
+    }
+    
+    /**
+     * @return frames per second achieved over the last second.
+     */
+    public double getAchievedFrameRate() {
+        return achievedFrameRate;
+    }
+    
+    /**
+     * @return number of ticks dropped because the simulation fell too far
+     * behind.
+     */
+    public long getDroppedTicks() {
+        return droppedTicks;
+    }
+    
+    /**
+     * Set the autosaver used to take periodic snapshots of the terrarium,
+     * closing any previous one.  While the simulation is running the
+     * change is made between ticks, so that the simulation thread never
+     * notifies an autosaver which has been closed.
+     * 
+     * @param autosaver autosaver, or null to disable autosaving
+     */
+    public void setAutosaver(final Autosaver autosaver) {
+        Runnable swap = new Runnable() {
+            @Override
+            public void run() {
+                Autosaver previous = TerrariumSimulation.this.autosaver;
+                TerrariumSimulation.this.autosaver = autosaver;
+                if (previous != null)
+                    previous.close();
+            }
+        };
+        
+        synchronized (this) {
+            if (running)
+                commands.add(swap);
+            else {
+                applyCommands();
+                swap.run();
+            }
+        }
+    }
+    
+    /**
+     * @return current autosaver, or null if autosaving is disabled.  A
+     * change made by setAutosaver() may not yet be visible here.
+     */
+    public Autosaver getAutosaver() {
+        return autosaver;
+    }
+    
+    /**
+     * Queue a change to the terrarium for application between ticks.  If
+     * the simulation is not running the change is applied directly, and a
+     * new frame produced, so that edits made while it is stopped can be
+     * seen at once.
+     * 
+     * @param command 
+     */
+    public void submit(Runnable command) {
+        synchronized (this) {
+            if (running) {
+                commands.add(command);
+                return;
+            }
+            
+            applyCommands();
+            command.run();
+            
+            Rectangle region = terrarium.updateImage();
+            if (region != null && listener != null)
+                listener.frameReady(region);
+        }
+    }
+    
+    /**
+     * Run a task against the terrarium between ticks and wait for its
+     * result.  If the simulation is not running the task is run directly.
+     * 
+     * @param <T> result type
+     * @param task
+     * @return result of task
+     * @throws ExecutionException if the task throws an exception
+     */
+    public <T> T call(Callable<T> task) throws ExecutionException {
+        FutureTask<T> future = new FutureTask<>(task);
+        synchronized (this) {
+            if (running)
+                commands.add(future);
+            else {
+                applyCommands();
+                future.run();
+            }
+        }
+        
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ExecutionException(ex);
+        }
+    }
+    
+    /**
+     * Apply all queued changes to the terrarium.
+     */
+    void applyCommands() {
+        Runnable command;
+        while ((command = commands.poll()) != null)
+            command.run();
+    }
+
+    @Override
+    public void run() {
+        long now = System.nanoTime();
+        long nextTick = now, nextFrame = now;
+        
+        long rateStart = now;
+        int tickCount = 0, frameCount = 0;
+        boolean ticked = false;
+        
+        while (running) {
+            
+            // Run all overdue ticks, up to the catch-up limit.
+            int ticks = 0;
+            while (now - nextTick >= 0 && ticks < maxCatchUp) {
+                applyCommands();
+                terrarium.tick();
+                
+                Autosaver saver = autosaver;
+                if (saver != null)
+                    saver.tickCompleted(terrarium.getEngine());
+                
+                nextTick += tickPeriod;
+                ticks += 1;
+                now = System.nanoTime();
+            }
+            
+            if (now - nextTick >= 0) {
+                droppedTicks += (now - nextTick)/tickPeriod + 1;
+                nextTick = now + tickPeriod;
+            }
+            tickCount += ticks;
+            if (ticks > 0)
+                ticked = true;
+            
+            if (now - nextFrame >= 0) {
+                // No need for a new frame if nothing has happened.
+                if (ticked) {
+                    Rectangle region = terrarium.updateImage();
+                    if (region != null && listener != null)
+                        listener.frameReady(region);
+                    frameCount += 1;
+                    ticked = false;
+                }
+                
+                // Frames which have been missed are skipped.
+                nextFrame += framePeriod;
+                now = System.nanoTime();
+                if (now - nextFrame >= 0)
+                    nextFrame = now + framePeriod;
+            }
+            
+            if (now - rateStart >= RATE_INTERVAL) {
+                achievedTickRate = tickCount*1e9/(now - rateStart);
+                achievedFrameRate = frameCount*1e9/(now - rateStart);
+                tickCount = 0;
+                frameCount = 0;
+                rateStart = now;
+            }
+            
+            long delay = Math.min(nextTick, nextFrame) - now;
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay/1000000, (int)(delay%1000000));
+                } catch (InterruptedException ex) {
+                    // Interrupted by stop()
+                }
+            }
+            now = System.nanoTime();
+        }
+        
+        // Don't leave changes hanging until the next start().
+        applyCommands();
+    }
+}
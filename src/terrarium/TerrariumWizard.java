@@ -37,6 +37,7 @@ import javax.swing.BoxLayout;
 import javax.swing.ButtonGroup;
 import javax.swing.JButton;
 import javax.swing.JColorChooser;
+import javax.swing.JComboBox;
 import javax.swing.JDialog;
 import javax.swing.JFileChooser;
 import javax.swing.JFormattedTextField;
@@ -54,9 +55,13 @@ import javax.swing.filechooser.FileNameExtensionFilter;
  */
 public class TerrariumWizard extends JDialog {
     
+    static final Color DEFAULT_BACKGROUND = new Color(200, 200, 255);
+    
     JFormattedTextField widthField, heightField;
+    JComboBox<CellStorage> storageComboBox;
+    JComboBox<EngineType> engineComboBox;
     JRadioButton solidRadioButton, imageRadioButton;
-    Color backgroundColour = new Color(200, 200, 255);
+    Color backgroundColour = DEFAULT_BACKGROUND;
     Image backgroundImage;
     boolean useBackgroundImage = false;
     
@@ -95,6 +100,32 @@ public class TerrariumWizard extends JDialog {
 
         add(sizePanel);
         
+        JPanel storagePanel = new JPanel();
+        storagePanel.setLayout(new BoxLayout(storagePanel, BoxLayout.X_AXIS));
+        storagePanel.setBorder(BorderFactory.createTitledBorder("Cell storage"));
+        
+        // Chunked storage only allocates memory where there is something
+        // other than empty space, which suits very large terrariums.
+        storageComboBox = new JComboBox<>(CellStorage.values());
+        storageComboBox.setSelectedItem(CellStorage.BYTE);
+        storageComboBox.setMaximumSize(storageComboBox.getPreferredSize());
+        storagePanel.add(storageComboBox);
+        storagePanel.add(Box.createHorizontalGlue());
+        
+        add(storagePanel);
+        
+        JPanel enginePanel = new JPanel();
+        enginePanel.setLayout(new BoxLayout(enginePanel, BoxLayout.X_AXIS));
+        enginePanel.setBorder(BorderFactory.createTitledBorder("Engine"));
+        
+        engineComboBox = new JComboBox<>(EngineType.values());
+        engineComboBox.setSelectedItem(EngineType.TABLE);
+        engineComboBox.setMaximumSize(engineComboBox.getPreferredSize());
+        enginePanel.add(engineComboBox);
+        enginePanel.add(Box.createHorizontalGlue());
+        
+        add(enginePanel);
+        
         ButtonGroup group = new ButtonGroup();
         solidRadioButton = new JRadioButton("Solid");
         group.add(solidRadioButton);
@@ -167,8 +198,38 @@ public class TerrariumWizard extends JDialog {
                 
                 int width = (int)widthField.getValue();
                 int height = (int)heightField.getValue();
+                CellStorage storage = (CellStorage)storageComboBox.getSelectedItem();
+                EngineType engine = (EngineType)engineComboBox.getSelectedItem();
                 
-                terrarium = new Terrarium(width, height);
+                // Refuse worlds which won't fit on the heap before
+                // allocating them, rather than relying on recovering from
+                // running out.  Grids held off the heap are refused by
+                // their storage if too large.
+                Runtime runtime = Runtime.getRuntime();
+                long available = runtime.maxMemory()
+                        - (runtime.totalMemory() - runtime.freeMemory());
+                double needed = (double)width*height*storage.getHeapBytesPerCell()
+                        + Terrarium.getFrameBytes(width, height);
+                if (needed > available) {
+                    JOptionPane.showMessageDialog(appFrame,
+                            String.format("Cannot create a %dx%d terrarium: "
+                                    + "not enough memory (%.0f MB needed, "
+                                    + "%.0f MB available).", width, height,
+                                    needed/(1 << 20), available/(double)(1 << 20)),
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                
+                try {
+                    terrarium = new Terrarium(
+                            engine.create(width, height, storage));
+                } catch (IllegalArgumentException ex) {
+                    JOptionPane.showMessageDialog(appFrame,
+                            "Cannot create a " + width + "x" + height
+                            + " terrarium: " + ex.getMessage(),
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
                 if (useBackgroundImage)
                     terrarium.setBackgroundImage(backgroundImage);
                 else
@@ -190,7 +251,7 @@ public class TerrariumWizard extends JDialog {
         buttonPanel.setMaximumSize(buttonPanel.getPreferredSize());
         
         setLayout(new BoxLayout(getContentPane(), BoxLayout.Y_AXIS));
-        setSize(300,250);
+        setSize(300,350);
         setLocationRelativeTo(frame);
         
     }
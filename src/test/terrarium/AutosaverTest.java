@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2026 Terrarium contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package terrarium;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of the autosaver's handling of snapshots and of being closed.
+ *
+ * @author Terrarium contributors
+ */
+public class AutosaverTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void testKeepsLatestSnapshots() throws Exception {
+        File dir = folder.getRoot();
+        InorganicCA ca = new InorganicCA(40, 30);
+        Scene.HALF_DIRT.apply(ca, 1);
+        
+        Autosaver autosaver = new Autosaver(dir, "test", 1, 0, 2);
+        for (int tick=0; tick<5; tick++) {
+            ca.updateStates();
+            autosaver.tickCompleted(ca);
+            
+            // Wait for each snapshot, as busy autosavers skip ticks.
+            while (autosaver.writing)
+                Thread.sleep(1);
+        }
+        autosaver.awaitClose();
+        
+        String[] names = dir.list();
+        Arrays.sort(names);
+        assertEquals(2, names.length);
+        assertTrue(names[0].matches("test-[0-9]{8}-[0-9]{9}-0000000004\\.terrarium"));
+        assertTrue(names[1].matches("test-[0-9]{8}-[0-9]{9}-0000000005\\.terrarium"));
+    }
+    
+    @Test
+    public void testPrunesEarlierSessions() throws Exception {
+        File dir = folder.getRoot();
+        File old = new File(dir, "test-20000101-000000000-0000000001.terrarium");
+        File other = new File(dir, "other-20000101-000000000-0000000001.terrarium");
+        assertTrue(old.createNewFile());
+        assertTrue(other.createNewFile());
+        
+        InorganicCA ca = new InorganicCA(40, 30);
+        Autosaver autosaver = new Autosaver(dir, "test", 1, 0, 1);
+        autosaver.tickCompleted(ca);
+        autosaver.awaitClose();
+        
+        // The snapshot of the earlier session is replaced rather than
+        // overwritten.
+        assertFalse(old.exists());
+        assertTrue(other.exists());
+        assertEquals(2, dir.list().length);
+    }
+    
+    @Test
+    public void testDeletesStaleTemporaryFiles() throws Exception {
+        File dir = folder.getRoot();
+        File stale = new File(dir, "test-0000000007.terrarium.tmp");
+        File other = new File(dir, "other-0000000007.terrarium.tmp");
+        assertTrue(stale.createNewFile());
+        assertTrue(other.createNewFile());
+        
+        Autosaver autosaver = new Autosaver(dir, "test", 1, 0, 3);
+        autosaver.awaitClose();
+        
+        assertFalse(stale.exists());
+        assertTrue(other.exists());
+    }
+    
+    @Test
+    public void testKeepsTemporaryFilesBeingWritten() throws Exception {
+        File dir = folder.getRoot();
+        File busy = new File(dir, "test-0000000007.terrarium.tmp");
+        assertTrue(busy.createNewFile());
+        
+        // Stands in for an autosaver with the same prefix which is still
+        // finishing a snapshot.
+        Autosaver.WRITING.add(busy);
+        try {
+            Autosaver autosaver = new Autosaver(dir, "test", 1, 0, 3);
+            autosaver.awaitClose();
+        } finally {
+            Autosaver.WRITING.remove(busy);
+        }
+        
+        assertTrue(busy.exists());
+    }
+    
+    @Test
+    public void testTickAfterClose() throws Exception {
+        File dir = folder.getRoot();
+        InorganicCA ca = new InorganicCA(40, 30);
+        
+        Autosaver autosaver = new Autosaver(dir, "test", 1, 0, 3);
+        autosaver.close();
+        
+        // Ticks reported by a thread which has not yet seen the autosaver
+        // replaced must be ignored rather than fail.
+        for (int tick=0; tick<3; tick++)
+            autosaver.tickCompleted(ca);
+        autosaver.awaitClose();
+        
+        assertTrue(autosaver.executor.isTerminated());
+        assertEquals(0, dir.list().length);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2026 Terrarium contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package terrarium;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Checks the bit-sliced engine against the reference block rules of
+ * InorganicCA.
+ *
+ * @author Terrarium contributors
+ */
+public class InorganicCABitSlicedTest {
+    
+    static final int NSTATES = InorganicCA.STATES.length;
+    static final int NCONFIGS = NSTATES*NSTATES*NSTATES*NSTATES;
+    
+    /**
+     * Lay out every block configuration side by side along a single row
+     * of blocks.
+     * 
+     * @param ca CA at least 2*NCONFIGS cells wide and 2 high
+     */
+    static void setAllBlocks(InorganicCA ca) {
+        for (int code=0; code<NCONFIGS; code++) {
+            int j = 2*code;
+            ca.cells.set(ca.index(0, j), code/(NSTATES*NSTATES*NSTATES));
+            ca.cells.set(ca.index(0, j+1), code/(NSTATES*NSTATES) % NSTATES);
+            ca.cells.set(ca.index(1, j), code/NSTATES % NSTATES);
+            ca.cells.set(ca.index(1, j+1), code % NSTATES);
+        }
+    }
+    
+    /**
+     * Update every configuration with full spans of the bit-sliced engine,
+     * including the gathering and scattering of lanes, and compare with
+     * the reference rules applied one block at a time.
+     */
+    @Test
+    public void testAllBlocks() {
+        InorganicCA reference = new InorganicCA(2*NCONFIGS, 2);
+        InorganicCABitSliced engine = new InorganicCABitSliced(2*NCONFIGS, 2);
+        setAllBlocks(reference);
+        setAllBlocks(engine);
+        
+        for (int first=0; first<NCONFIGS; first += InorganicCA.MAX_SPAN) {
+            int count = Math.min(InorganicCA.MAX_SPAN, NCONFIGS - first);
+            
+            long expectedChanged = 0;
+            int expectedSwaps = 0;
+            for (int k=0; k<count; k++) {
+                int swaps = reference.updateBlockAt(reference.index(0, 2*(first + k)));
+                if (swaps > 0)
+                    expectedChanged |= 1L << k;
+                expectedSwaps += swaps;
+            }
+            
+            engine.rowSwaps[0] = 0;
+            long changed = engine.updateBlockSpan(0,
+                    engine.index(0, 2*first), count);
+            
+            assertEquals("Blocks changed in span from " + first,
+                    expectedChanged, changed);
+            assertEquals("Swaps made in span from " + first,
+                    expectedSwaps, engine.rowSwaps[0]);
+        }
+        
+        for (int i=0; i<2; i++) {
+            for (int j=0; j<2*NCONFIGS; j++) {
+                assertEquals("Cell (" + i + "," + j + ")",
+                        reference.getCellState(i, j), engine.getCellState(i, j));
+            }
+        }
+    }
+    
+    /**
+     * Run a random scene containing every state through whole sweeps,
+     * serial and parallel, and compare with the reference engine.
+     */
+    @Test
+    public void testSweeps() {
+        int width = 301, height = 203;
+        
+        for (int parallelism=1; parallelism<=4; parallelism += 3) {
+            InorganicCA reference = new InorganicCA(width, height);
+            InorganicCA engine = new InorganicCABitSliced(width, height);
+            engine.setParallelism(parallelism);
+            
+            Random random = new Random(parallelism);
+            for (int i=0; i<height; i++) {
+                for (int j=0; j<width; j++) {
+                    InorganicCA.CellState state =
+                            InorganicCA.STATES[random.nextInt(NSTATES)];
+                    reference.setCellState(i, j, state);
+                    engine.setCellState(i, j, state);
+                }
+            }
+            
+            for (int tick=0; tick<200; tick++) {
+                reference.updateStates();
+                engine.updateStates();
+                
+                assertEquals("Swaps in tick " + tick,
+                        reference.getLastSwapCount(), engine.getLastSwapCount());
+                for (int i=0; i<height; i++) {
+                    for (int j=0; j<width; j++) {
+                        assertEquals("Cell (" + i + "," + j + ") after tick " + tick,
+                                reference.getCellState(i, j),
+                                engine.getCellState(i, j));
+                    }
+                }
+            }
+            
+            engine.setParallelism(1);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2026 Terrarium contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package terrarium;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+import terrarium.InorganicCA.Angle;
+import terrarium.InorganicCA.CellState;
+
+/**
+ * Checks the one-cell CA against a straightforward implementation of
+ * its rules, and that it conserves and settles cells.
+ *
+ * @author Terrarium contributors
+ */
+public class InorganicCAOneCellTest {
+    
+    static final int TICKS = 60;
+    
+    /**
+     * The one-cell CA as it was written before its updates were made
+     * allocation-free: cells are Points, the queue a LinkedList and the
+     * updated cells a HashSet.  Left/right choices and the direction of
+     * fall follow the engine's current rules.
+     */
+    static class Reference {
+        final int width, height;
+        final CellState[][] grid;
+        final SplitMixRandom random;
+        int swaps;
+        
+        Reference(CellularEngine ca) {
+            width = ca.getWidth();
+            height = ca.getHeight();
+            grid = new CellState[height][width];
+            for (int i=0; i<height; i++)
+                for (int j=0; j<width; j++)
+                    grid[i][j] = ca.getCellState(i, j);
+            random = new SplitMixRandom(ca.getSeed());
+        }
+        
+        CellState get(int i, int j) {
+            if (i < 0 || i >= height || j < 0 || j >= width)
+                return CellState.WALL;
+            return grid[i][j];
+        }
+        
+        boolean pushState(int i1, int j1, int i2, int j2) {
+            if (get(i2, j2).isEmptyFor(get(i1, j1))) {
+                CellState state = grid[i1][j1];
+                grid[i1][j1] = grid[i2][j2];
+                grid[i2][j2] = state;
+                swaps += 1;
+                return true;
+            } else
+                return false;
+        }
+        
+        Point updateCell(int i, int j, Angle angle) {
+            if (angle.isBiggerThan(grid[i][j].maxAngle))
+                return null;
+            int nextI = i + angle.dy*grid[i][j].gravity;
+            int dX = angle.dx;
+            if (dX != 0 && random.nextBoolean())
+                dX = -dX;
+            if (pushState(i, j, nextI, j + dX))
+                return new Point(nextI, j + dX);
+            if (pushState(i, j, nextI, j - dX))
+                return new Point(nextI, j - dX);
+            return null;
+        }
+        
+        List<Point> neighbours(Point p) {
+            List<Point> neighbours = new ArrayList<>();
+            for (int i = Math.max(p.x - 1, 0); i < Math.min(p.x + 2, height); i++) {
+                for (int j = Math.max(p.y - 1, 0); j < Math.min(p.y + 2, width); j++) {
+                    if (!(i == p.x && j == p.y))
+                        neighbours.add(new Point(i, j));
+                }
+            }
+            return neighbours;
+        }
+        
+        void updateStates() {
+            swaps = 0;
+            Set<Point> updatedCells = new HashSet<>();
+            for (Angle angle : Angle.values()) {
+                if (angle == Angle.NONE)
+                    continue;
+                LinkedList<Point> toCheck = new LinkedList<>();
+                for (int i=0; i<height; i++) {
+                    for (int j=0; j<width; j++) {
+                        if (!angle.isBiggerThan(grid[i][j].maxAngle))
+                            toCheck.add(new Point(i, j));
+                    }
+                }
+                while (!toCheck.isEmpty()) {
+                    Point p = toCheck.removeFirst();
+                    if (!updatedCells.contains(p)) {
+                        Point updated = updateCell(p.x, p.y, angle);
+                        if (updated != null) {
+                            updatedCells.add(updated);
+                            toCheck.addAll(neighbours(p));
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
+    static void fill(CellularEngine ca, Random random, int emptyOdds) {
+        for (int i=0; i<ca.getHeight(); i++) {
+            for (int j=0; j<ca.getWidth(); j++) {
+                CellState state = random.nextInt(emptyOdds) == 0
+                        ? CellState.EMPTY
+                        : InorganicCA.STATES[random.nextInt(InorganicCA.STATES.length)];
+                ca.setCellState(i, j, state);
+            }
+        }
+    }
+    
+    static void assertSameGrid(String message, Reference ref, CellularEngine ca) {
+        for (int i=0; i<ref.height; i++)
+            for (int j=0; j<ref.width; j++)
+                assertEquals(message + " at (" + i + "," + j + ")",
+                        ref.grid[i][j], ca.getCellState(i, j));
+    }
+    
+    @Test
+    public void testMatchesReference() {
+        int[][] sizes = {{1, 1}, {2, 3}, {7, 5}, {33, 20}, {64, 48}};
+        
+        for (CellStorage storage : CellStorage.values()) {
+            for (int[] size : sizes) {
+                String name = storage + " " + size[0] + "x" + size[1];
+                CellularEngine ca = EngineType.ONE_CELL.create(size[0], size[1], storage);
+                fill(ca, new Random(size[0]*size[1]), 3);
+                ca.setSeed(17);
+                Reference ref = new Reference(ca);
+                
+                for (int tick=0; tick<TICKS; tick++) {
+                    ca.updateStates();
+                    ref.updateStates();
+                    assertEquals(name + " swaps in tick " + tick,
+                            ref.swaps, ca.getLastSwapCount());
+                    assertSameGrid(name + " after tick " + tick, ref, ca);
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testConservesPopulation() {
+        CellularEngine ca = EngineType.ONE_CELL.create(50, 40, CellStorage.BYTE);
+        fill(ca, new Random(3), 2);
+        ca.setSeed(3);
+        
+        int[] population = new int[InorganicCA.STATES.length];
+        for (CellState state : InorganicCA.STATES)
+            population[state.ordinal()] = ca.getPopulation(state);
+        
+        for (int tick=0; tick<TICKS; tick++) {
+            ca.updateStates();
+            int[] counted = new int[InorganicCA.STATES.length];
+            for (int i=0; i<ca.getHeight(); i++)
+                for (int j=0; j<ca.getWidth(); j++)
+                    counted[ca.getCellState(i, j).ordinal()] += 1;
+            
+            for (CellState state : InorganicCA.STATES) {
+                assertEquals(state + " after tick " + tick,
+                        population[state.ordinal()], counted[state.ordinal()]);
+                assertEquals(state + " count after tick " + tick,
+                        population[state.ordinal()], ca.getPopulation(state));
+            }
+        }
+    }
+    
+    @Test
+    public void testDirtSettles() {
+        int width = 30, height = 20;
+        CellularEngine ca = EngineType.ONE_CELL.create(width, height, CellStorage.BYTE);
+        Random random = new Random(7);
+        for (int i=0; i<height/2; i++)
+            for (int j=0; j<width; j++)
+                if (random.nextInt(3) == 0)
+                    ca.setCellState(i, j, CellState.DIRT);
+        ca.setCellState(height-5, width/2, CellState.WALL);
+        
+        // Each cell moves at most one row per tick.
+        for (int tick=0; tick<2*height; tick++)
+            ca.updateStates();
+        
+        ca.updateStates();
+        assertEquals(0, ca.getLastSwapCount());
+        for (int i=0; i<height-1; i++) {
+            for (int j=0; j<width; j++) {
+                if (ca.getCellState(i, j) != CellState.DIRT)
+                    continue;
+                for (int dj=-1; dj<=1; dj++) {
+                    if (j+dj >= 0 && j+dj < width)
+                        assertTrue("dirt at (" + i + "," + j + ") can fall",
+                                ca.getCellState(i+1, j+dj) != CellState.EMPTY);
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testSeededRunsRepeat() {
+        int width = 40, height = 30;
+        
+        for (CellStorage storage : CellStorage.values()) {
+            CellularEngine first = EngineType.ONE_CELL.create(width, height, storage);
+            CellularEngine second = EngineType.ONE_CELL.create(width, height, storage);
+            fill(first, new Random(11), 3);
+            fill(second, new Random(11), 3);
+            first.setSeed(42);
+            second.setSeed(42);
+            
+            CellularEngine snapshot = null;
+            List<String> grids = new ArrayList<>();
+            for (int tick=0; tick<TICKS; tick++) {
+                if (tick == TICKS/2)
+                    snapshot = first.snapshot();
+                first.updateStates();
+                second.updateStates();
+                assertEquals(storage + " grid after tick " + tick,
+                        first.serialize(), second.serialize());
+                if (tick >= TICKS/2)
+                    grids.add(first.serialize());
+            }
+            
+            // A run restored from a snapshot, seed included, must
+            // retrace the original.
+            CellularEngine resumed = EngineType.ONE_CELL.adopt(snapshot);
+            for (int tick=TICKS/2; tick<TICKS; tick++) {
+                resumed.updateStates();
+                assertEquals(storage + " resumed grid after tick " + tick,
+                        grids.get(tick - TICKS/2), resumed.serialize());
+            }
+        }
+    }
+    
+    @Test
+    public void testSeedChangesRun() {
+        CellularEngine first = EngineType.ONE_CELL.create(40, 30, CellStorage.BYTE);
+        CellularEngine second = EngineType.ONE_CELL.create(40, 30, CellStorage.BYTE);
+        fill(first, new Random(11), 3);
+        fill(second, new Random(11), 3);
+        first.setSeed(1);
+        second.setSeed(2);
+        
+        for (int tick=0; tick<TICKS; tick++) {
+            first.updateStates();
+            second.updateStates();
+        }
+        assertNotEquals(first.serialize(), second.serialize());
+    }
+}
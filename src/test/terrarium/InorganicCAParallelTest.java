@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2026 Terrarium contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package terrarium;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Checks that parallel sweeps give exactly the results of serial ones,
+ * for every engine sharing the strip-parallel sweep of InorganicCA and
+ * every kind of cell storage.
+ *
+ * @author Terrarium contributors
+ */
+public class InorganicCAParallelTest {
+    
+    static final int TICKS = 200;
+    
+    @Test
+    public void testParallelMatchesSerial() {
+        // Tall enough for several strips, with a partial tile at the
+        // bottom and right, where strips and chunks meet unevenly.
+        int width = 150, height = 7*InorganicCA.TILE_SIZE + 11;
+        
+        for (EngineType type : new EngineType[] {EngineType.BLOCK, EngineType.TABLE,
+                EngineType.BIT_SLICED}) {
+            for (CellStorage storage : CellStorage.values()) {
+                String name = type + "/" + storage;
+                
+                CellularEngine serial = type.create(width, height, storage);
+                CellularEngine parallel = type.create(width, height, storage);
+                parallel.setParallelism(4);
+                
+                try {
+                    Random random = new Random(storage.ordinal());
+                    for (int i=0; i<height; i++) {
+                        for (int j=0; j<width; j++) {
+                            // Leave some space empty so that chunked
+                            // storage allocates chunks while sweeping.
+                            InorganicCA.CellState state = random.nextInt(3) == 0
+                                    ? InorganicCA.CellState.EMPTY
+                                    : InorganicCA.STATES[random.nextInt(
+                                            InorganicCA.STATES.length)];
+                            serial.setCellState(i, j, state);
+                            parallel.setCellState(i, j, state);
+                        }
+                    }
+                    serial.setSeed(5);
+                    parallel.setSeed(5);
+                    
+                    for (int tick=0; tick<TICKS; tick++) {
+                        serial.updateStates();
+                        parallel.updateStates();
+                        
+                        assertEquals(name + " swaps in tick " + tick,
+                                serial.getLastSwapCount(),
+                                parallel.getLastSwapCount());
+                        assertEquals(name + " blocks in tick " + tick,
+                                serial.getLastActiveBlockCount(),
+                                parallel.getLastActiveBlockCount());
+                        assertEquals(name + " grid after tick " + tick,
+                                serial.serialize(), parallel.serialize());
+                    }
+                } finally {
+                    parallel.setParallelism(1);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2026 Terrarium contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package terrarium;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Checks the block engines against rules written out independently of
+ * InorganicCA.updateBlockAt(), from which the lookup table is built, and
+ * checks the table engine against the block engine over whole sweeps.
+ *
+ * @author Terrarium contributors
+ */
+public class InorganicCATableTest {
+    
+    static final int NSTATES = InorganicCA.STATES.length;
+    static final int NCONFIGS = NSTATES*NSTATES*NSTATES*NSTATES;
+    
+    static final int E = InorganicCA.EMPTY, S = InorganicCA.STEAM,
+            W = InorganicCA.WATER, D = InorganicCA.DIRT, X = InorganicCA.WALL;
+    
+    /** Positions of the cells of a block, in the order used by codes. */
+    static final int TL = 0, TR = 1, BL = 2, BR = 3;
+    
+    /**
+     * Fill the single block of a 2x2 CA with the configuration given by a
+     * base-NSTATES code, most significant digit top-left.
+     * 
+     * @param ca
+     * @param code 
+     */
+    static void setBlock(InorganicCA ca, int code) {
+        ca.cells.set(ca.index(0, 0), code/(NSTATES*NSTATES*NSTATES));
+        ca.cells.set(ca.index(0, 1), code/(NSTATES*NSTATES) % NSTATES);
+        ca.cells.set(ca.index(1, 0), code/NSTATES % NSTATES);
+        ca.cells.set(ca.index(1, 1), code % NSTATES);
+    }
+    
+    /**
+     * @param ca
+     * @return states of the block of a 2x2 CA, as a base-NSTATES code.
+     */
+    static int getBlock(InorganicCA ca) {
+        return ((ca.cells.get(ca.index(0, 0))*NSTATES
+                + ca.cells.get(ca.index(0, 1)))*NSTATES
+                + ca.cells.get(ca.index(1, 0)))*NSTATES
+                + ca.cells.get(ca.index(1, 1));
+    }
+    
+    /**
+     * @param block states of a block, in the order TL, TR, BL, BR
+     * @return base-NSTATES code of the block.
+     */
+    static int code(int... block) {
+        return ((block[TL]*NSTATES + block[TR])*NSTATES + block[BL])*NSTATES
+                + block[BR];
+    }
+    
+    /**
+     * Move a cell into another if that one is empty for it, as in the
+     * pushState() rule of the original cell-by-cell implementation.
+     * 
+     * @param block
+     * @param state state of the cell to move
+     * @param from
+     * @param to
+     * @return true if the cells were swapped.
+     */
+    static boolean push(int[] block, int state, int from, int to) {
+        if (block[from] == state && block[to] < state) {
+            block[from] = block[to];
+            block[to] = state;
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Apply the dirt and water rules of the original implementation,
+     * written out one push at a time.
+     * 
+     * @param block block to update
+     * @return number of swaps made.
+     */
+    static int baselineUpdate(int[] block) {
+        int swaps = 0;
+        for (int state : new int[] {D, W}) {
+            if (push(block, state, TL, BR)) swaps++;
+            if (push(block, state, TR, BL)) swaps++;
+            if (push(block, state, TL, BL)) swaps++;
+            if (push(block, state, TR, BR)) swaps++;
+        }
+        if (push(block, W, TL, TR) || push(block, W, TR, TL))
+            swaps++;
+        if (push(block, W, BR, BL) || push(block, W, BL, BR))
+            swaps++;
+        return swaps;
+    }
+    
+    static InorganicCA[] engines() {
+        return new InorganicCA[] {
+            new InorganicCA(2, 2), new InorganicCATable(2, 2)
+        };
+    }
+    
+    /**
+     * Every block without steam must behave exactly as under the original
+     * rules, walls included.
+     */
+    @Test
+    public void testBaselineBlocks() {
+        for (InorganicCA engine : engines()) {
+            for (int code=0; code<NCONFIGS; code++) {
+                int[] block = {
+                    code/(NSTATES*NSTATES*NSTATES),
+                    code/(NSTATES*NSTATES) % NSTATES,
+                    code/NSTATES % NSTATES,
+                    code % NSTATES
+                };
+                if (block[TL] == S || block[TR] == S
+                        || block[BL] == S || block[BR] == S)
+                    continue;
+                
+                int expectedSwaps = baselineUpdate(block);
+                setBlock(engine, code);
+                int swaps = engine.updateBlockAt(engine.index(0, 0));
+                
+                String name = engine.getClass().getSimpleName()
+                        + " configuration " + code;
+                assertEquals(name, code(block), getBlock(engine));
+                assertEquals(name + " swaps", expectedSwaps, swaps);
+            }
+        }
+    }
+    
+    /**
+     * Steam rises as water falls, passes through water and dirt, and is
+     * held by walls.  Expected blocks are given TL, TR, BL, BR.
+     */
+    @Test
+    public void testSteamBlocks() {
+        int[][][] cases = {
+            // Rises diagonally, then spreads along the top row.
+            {{E, E, S, E}, {S, E, E, E}},
+            {{E, E, X, S}, {E, S, X, E}},
+            // Swaps places with water or dirt above it.
+            {{W, W, S, S}, {S, S, W, W}},
+            {{W, E, S, E}, {E, S, W, E}},
+            {{D, E, S, E}, {S, E, E, D}},
+            // Water beside steam on the bottom row displaces it.
+            {{E, E, S, W}, {E, S, W, E}},
+            // Rests on water.
+            {{S, S, W, W}, {S, S, W, W}},
+            // Walls are never displaced.
+            {{X, E, S, E}, {X, S, E, E}},
+            {{X, X, S, E}, {X, X, E, S}},
+            {{X, X, X, S}, {X, X, X, S}},
+            {{S, E, X, X}, {E, S, X, X}},
+            {{S, X, X, X}, {S, X, X, X}},
+        };
+        
+        for (InorganicCA engine : engines()) {
+            for (int[][] c : cases) {
+                setBlock(engine, code(c[0]));
+                engine.updateBlockAt(engine.index(0, 0));
+                assertEquals(engine.getClass().getSimpleName() + " block "
+                        + Arrays.toString(c[0]), code(c[1]), getBlock(engine));
+            }
+        }
+    }
+    
+    @Test
+    public void testUnchangedBlocks() {
+        InorganicCA reference = new InorganicCA(2, 2);
+        
+        for (int code=0; code<NCONFIGS; code++) {
+            setBlock(reference, code);
+            int swaps = reference.updateBlockAt(reference.index(0, 0));
+            boolean unchanged = getBlock(reference) == code;
+            
+            assertEquals("Sentinel for configuration " + code,
+                    unchanged, InorganicCATable.TRANSITIONS[code] < 0);
+            if (unchanged)
+                assertEquals(0, swaps);
+        }
+    }
+    
+    /**
+     * Run a random scene containing every state through whole sweeps with
+     * both phase orders, and compare with the block engine.
+     */
+    @Test
+    public void testSweeps() {
+        int width = 157, height = 131;
+        
+        for (boolean randomPhase : new boolean[] {false, true}) {
+            InorganicCA reference = new InorganicCA(width, height);
+            InorganicCA engine = new InorganicCATable(width, height);
+            
+            Random random = new Random(randomPhase ? 2 : 1);
+            for (int i=0; i<height; i++) {
+                for (int j=0; j<width; j++) {
+                    InorganicCA.CellState state =
+                            InorganicCA.STATES[random.nextInt(NSTATES)];
+                    reference.setCellState(i, j, state);
+                    engine.setCellState(i, j, state);
+                }
+            }
+            
+            for (InorganicCA ca : new InorganicCA[] {reference, engine}) {
+                ca.setSeed(3);
+                ca.setRandomPhase(randomPhase);
+            }
+            
+            for (int tick=0; tick<300; tick++) {
+                reference.updateStates();
+                engine.updateStates();
+                
+                assertEquals("Swaps in tick " + tick,
+                        reference.getLastSwapCount(), engine.getLastSwapCount());
+                assertEquals("Grid after tick " + tick,
+                        reference.serialize(), engine.serialize());
+            }
+        }
+    }
+}
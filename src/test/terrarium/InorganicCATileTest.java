@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2026 Terrarium contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package terrarium;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Checks that the sweep, which skips tiles it knows to be settled, gives
+ * the same results as updating every block of the grid, however the grid
+ * is edited between ticks.
+ *
+ * @author Terrarium contributors
+ */
+public class InorganicCATileTest {
+    
+    /** Grid sizes, chosen to cover partial and single tiles. */
+    static final int[][] SIZES = {
+        {1, 1}, {3, 2}, {31, 33}, {32, 32}, {65, 33}, {31, 64}, {97, 70}
+    };
+    
+    static final int TICKS = 800;
+    
+    /**
+     * Update every block of the phase just used by the engine under test,
+     * as the original implementation did.
+     * 
+     * @param ca reference CA
+     * @param phase 
+     */
+    static void fullSweep(InorganicCA ca, int phase) {
+        for (int i=phase/2; i<ca.height; i += 2) {
+            for (int j=phase%2; j<ca.width; j += 2)
+                ca.updateBlockAt(ca.index(i, j));
+        }
+    }
+    
+    /**
+     * @param random
+     * @param size grid width or height
+     * @return random coordinate, half the time on either side of a tile
+     * boundary, where edits must wake the neighbouring tiles.
+     */
+    static int coordinate(Random random, int size) {
+        int tileBoundaries = (size - 1)/InorganicCA.TILE_SIZE;
+        if (tileBoundaries == 0 || random.nextBoolean())
+            return random.nextInt(size);
+        
+        return InorganicCA.TILE_SIZE*(1 + random.nextInt(tileBoundaries))
+                - random.nextInt(2);
+    }
+    
+    /**
+     * Make the same random edit to both CAs: a single cell, a rectangle of
+     * one state set cell by cell, or a row filled where it is empty for a
+     * state.
+     * 
+     * @param random
+     * @param cas 
+     */
+    static void edit(Random random, CellularEngine... cas) {
+        int width = cas[0].getWidth(), height = cas[0].getHeight();
+        InorganicCA.CellState state = InorganicCA.STATES[
+                random.nextInt(InorganicCA.STATES.length)];
+        int i0 = coordinate(random, height), j0 = coordinate(random, width);
+        
+        switch (random.nextInt(3)) {
+            case 0:
+                for (CellularEngine ca : cas)
+                    ca.setCellState(i0, j0, state);
+                break;
+            case 1:
+                int i1 = Math.min(height, i0 + 1 + random.nextInt(12));
+                int j1 = Math.min(width, j0 + 1 + random.nextInt(12));
+                for (CellularEngine ca : cas) {
+                    for (int i=i0; i<i1; i++) {
+                        for (int j=j0; j<j1; j++)
+                            ca.setCellState(i, j, state);
+                    }
+                }
+                break;
+            default:
+                int jEnd = Math.min(width, j0 + 1 + random.nextInt(40));
+                for (CellularEngine ca : cas)
+                    ca.fillSpan(i0, j0, jEnd, state);
+        }
+    }
+    
+    static void assertSameGrid(String message, CellularEngine expected,
+            CellularEngine actual) {
+        for (int i=0; i<expected.getHeight(); i++) {
+            for (int j=0; j<expected.getWidth(); j++) {
+                if (expected.getCellState(i, j) != actual.getCellState(i, j))
+                    assertEquals(message + " at (" + i + "," + j + ")",
+                            expected.getCellState(i, j),
+                            actual.getCellState(i, j));
+            }
+        }
+        for (InorganicCA.CellState state : InorganicCA.STATES)
+            assertEquals(message + " population of " + state,
+                    expected.getPopulation(state), actual.getPopulation(state));
+    }
+    
+    @Test
+    public void testSweepMatchesFullSweep() {
+        for (EngineType type : new EngineType[] {EngineType.BLOCK, EngineType.TABLE,
+                EngineType.BIT_SLICED}) {
+            for (CellStorage storage : CellStorage.values()) {
+                for (int[] size : SIZES) {
+                    int width = size[0], height = size[1];
+                    String name = type + "/" + storage + " " + width + "x" + height;
+                    
+                    CellularEngine engine = type.create(width, height, storage);
+                    InorganicCA reference = new InorganicCA(width, height);
+                    
+                    Random random = new Random(width*1000 + height);
+                    engine.setRandomPhase(width % 2 == 1);
+                    for (int n=0; n<width*height/8 + 1; n++)
+                        edit(random, engine, reference);
+                    
+                    for (int tick=0; tick<TICKS; tick++) {
+                        // Bursts of edits are separated by long enough
+                        // for most tiles to settle, so that edits land
+                        // both on settled tiles and on ones still moving.
+                        if (tick % 40 == 39) {
+                            for (int n=random.nextInt(4); n>=0; n--)
+                                edit(random, engine, reference);
+                        }
+                        
+                        engine.updateStates();
+                        fullSweep(reference, engine.getPhase());
+                        
+                        assertSameGrid(name + " tick " + tick, reference, engine);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Settle a grid, then edit it so that the new cells can only move
+     * within blocks belonging to the tile above or to the left, which the
+     * edit must therefore wake.
+     * 
+     * @param engine
+     * @param reference
+     * @param vertical if true the trap lies along a tile column boundary,
+     * otherwise along a tile row boundary
+     */
+    static void checkTrap(CellularEngine engine, InorganicCA reference,
+            boolean vertical, String name) {
+        int size = engine.getWidth();
+        int b = InorganicCA.TILE_SIZE;
+        
+        // A wall just beyond the boundary, and a line of cells against it
+        // which can only move back across the boundary.
+        for (CellularEngine ca : new CellularEngine[] {engine, reference}) {
+            for (int k=0; k<size; k++) {
+                if (vertical)
+                    ca.setCellState(k, b + 1, InorganicCA.CellState.WALL);
+                else
+                    ca.setCellState(b + 1, k, InorganicCA.CellState.WALL);
+            }
+        }
+        for (int tick=0; tick<2*InorganicCA.PHASES; tick++) {
+            engine.updateStates();
+            fullSweep(reference, engine.getPhase());
+        }
+        
+        InorganicCA.CellState state = vertical
+                ? InorganicCA.CellState.WATER
+                : InorganicCA.CellState.STEAM;
+        for (CellularEngine ca : new CellularEngine[] {engine, reference}) {
+            for (int k=0; k<size; k++) {
+                if (vertical)
+                    ca.setCellState(k, b, state);
+                else
+                    ca.setCellState(b, k, state);
+            }
+        }
+        
+        for (int tick=0; tick<2*InorganicCA.PHASES; tick++) {
+            engine.updateStates();
+            fullSweep(reference, engine.getPhase());
+            assertSameGrid(name + " tick " + tick, reference, engine);
+        }
+    }
+    
+    @Test
+    public void testEditsWakeNeighbours() {
+        int size = 2*InorganicCA.TILE_SIZE;
+        for (EngineType type : new EngineType[] {EngineType.BLOCK, EngineType.TABLE,
+                EngineType.BIT_SLICED}) {
+            for (boolean vertical : new boolean[] {false, true}) {
+                CellularEngine engine = type.create(size, size, CellStorage.BYTE);
+                InorganicCA reference = new InorganicCA(size, size);
+                checkTrap(engine, reference, vertical,
+                        type + (vertical ? " column" : " row") + " boundary");
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2026 Terrarium contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package terrarium;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that terrarium files round trip in every encoding, through
+ * streams, files and mapped files, and that malformed run-length data
+ * and impossible dimensions are rejected.
+ *
+ * @author Terrarium contributors
+ */
+public class TerrariumFileTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    static CellularEngine scene() {
+        CellularEngine ca = EngineType.TABLE.create(37, 23, CellStorage.BYTE);
+        Scene.CHAMBERS.apply(ca, 5);
+        ca.setSeed(99);
+        ca.setRandomPhase(true);
+        ca.updateStates();
+        return ca;
+    }
+    
+    static byte[] write(CellularEngine ca, TerrariumFile.Encoding encoding,
+            boolean compress) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TerrariumFile.write(ca, bytes, encoding, compress);
+        return bytes.toByteArray();
+    }
+    
+    static void assertSameState(String name, CellularEngine expected,
+            CellularEngine actual) {
+        assertEquals(name, expected.serialize(), actual.serialize());
+        assertEquals(name, expected.getPhase(), actual.getPhase());
+        assertEquals(name, expected.getSeed(), actual.getSeed());
+        assertEquals(name, expected.isRandomPhase(), actual.isRandomPhase());
+        for (InorganicCA.CellState state : InorganicCA.STATES)
+            assertEquals(name + " " + state,
+                    expected.getPopulation(state), actual.getPopulation(state));
+    }
+    
+    @Test
+    public void testRoundTrip() throws IOException {
+        CellularEngine ca = scene();
+        
+        for (TerrariumFile.Encoding encoding : TerrariumFile.Encoding.values()) {
+            for (boolean compress : new boolean[] {false, true}) {
+                String name = encoding + (compress ? " compressed" : "");
+                CellularEngine copy = TerrariumFile.read(
+                        new ByteArrayInputStream(write(ca, encoding, compress)));
+                assertSameState(name, ca, copy);
+            }
+        }
+    }
+    
+    @Test
+    public void testFileRoundTrip() throws IOException {
+        CellularEngine ca = scene();
+        
+        // Uncompressed raw files are read through a mapping of the file,
+        // which every storage backend must be able to fill.
+        File file = new File(folder.getRoot(), "raw.terrarium");
+        TerrariumFile.write(ca, file, TerrariumFile.Encoding.RAW, false);
+        for (CellStorage storage : CellStorage.values())
+            assertSameState("RAW " + storage, ca,
+                    TerrariumFile.read(file, storage));
+        
+        file = new File(folder.getRoot(), "rle.terrarium");
+        TerrariumFile.write(ca, file);
+        for (CellStorage storage : CellStorage.values())
+            assertSameState("RLE " + storage, ca,
+                    TerrariumFile.read(file, storage));
+    }
+    
+    @Test
+    public void testMapAndFlush() throws IOException {
+        CellularEngine scene = scene();
+        File file = new File(folder.getRoot(), "mapped.terrarium");
+        
+        CellularEngine ca = TerrariumFile.map(file, scene.getWidth(), scene.getHeight());
+        assertTrue(ca.isFileBacked());
+        ca.restore(scene);
+        ca.updateStates();
+        TerrariumFile.flush(ca, file);
+        
+        assertSameState("read", ca, TerrariumFile.read(file));
+        CellularEngine remapped = TerrariumFile.map(file);
+        assertSameState("remapped", ca, remapped);
+        
+        // Changes made through one mapping reach the file again.
+        remapped.updateStates();
+        TerrariumFile.flush(remapped, file);
+        assertSameState("read after remapping", remapped, TerrariumFile.read(file));
+    }
+    
+    static void assertRejected(String message, byte[] data) {
+        try {
+            TerrariumFile.read(new ByteArrayInputStream(data));
+            fail(message);
+        } catch (IOException ex) {
+        }
+    }
+    
+    @Test
+    public void testRejectsTrailingRuns() throws IOException {
+        byte[] data = write(scene(), TerrariumFile.Encoding.RLE, false);
+        
+        // An extra run of one EMPTY cell after the last.
+        byte[] extraRun = Arrays.copyOf(data, data.length + 2);
+        extraRun[data.length + 1] = 1;
+        assertRejected("extra run accepted", extraRun);
+        
+        // The last run made one cell longer, its length being short
+        // enough in this grid to be held in one byte.
+        assertTrue(data[data.length - 1] < 0x7F);
+        byte[] longRun = data.clone();
+        longRun[data.length - 1] += 1;
+        assertRejected("overlong run accepted", longRun);
+    }
+    
+    @Test
+    public void testRejectsOversizedDimensions() throws IOException {
+        // Widths this close to Integer.MAX_VALUE overflow once the border
+        // is added, and must not slip past the size check.  The width
+        // follows the magic number, version, flags and encoding.
+        byte[] data = write(scene(), TerrariumFile.Encoding.RAW, false);
+        ByteBuffer.wrap(data).putInt(9, Integer.MAX_VALUE - 1).putInt(13, 1);
+        assertRejected("oversized header accepted", data);
+        
+        try {
+            TerrariumFile.readJSON(new StringReader(
+                    "{\"width\": 2147483647, \"height\": 1, \"states\": [0]}"));
+            fail("oversized JSON accepted");
+        } catch (IOException ex) {
+        }
+    }
+    
+    @Test
+    public void testRejectsBadVersions() throws IOException {
+        // The version follows the magic number.
+        byte[] data = write(scene(), TerrariumFile.Encoding.RAW, false);
+        for (short version : new short[] {0, -1, TerrariumFile.VERSION + 1}) {
+            ByteBuffer.wrap(data).putShort(4, version);
+            assertRejected("version " + version + " accepted", data);
+        }
+    }
+}